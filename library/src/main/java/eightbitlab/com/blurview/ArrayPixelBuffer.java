@@ -0,0 +1,98 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * {@link PixelBuffer} backed by an int[]
+ */
+public final class ArrayPixelBuffer implements PixelBuffer {
+
+    private final int[] pixels;
+    private final int offset;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final int format;
+    private boolean opaque;
+
+    /**
+     * @param pixels unpremultiplied ARGB pixels, row by row, without padding
+     */
+    public ArrayPixelBuffer(@NonNull int[] pixels, int width, int height) {
+        this(pixels, 0, width, height, width, FORMAT_ARGB);
+    }
+
+    /**
+     * @param offset index of the first pixel
+     * @param stride distance between the starts of two rows, at least the width
+     * @param format {@link #FORMAT_ARGB}, {@link #FORMAT_ARGB_PREMULTIPLIED} or {@link #FORMAT_ABGR_PREMULTIPLIED}
+     */
+    public ArrayPixelBuffer(@NonNull int[] pixels, int offset, int width, int height, int stride, int format) {
+        if (stride < width || offset < 0 || offset + (long) (height - 1) * stride + width > pixels.length) {
+            throw new IllegalArgumentException("The pixels don't fit into the array");
+        }
+        this.pixels = pixels;
+        this.offset = offset;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+        this.format = format;
+    }
+
+    /**
+     * @param opaque true if all pixels have alpha 255, which lets the blurs skip the alpha channel
+     */
+    public void setOpaque(boolean opaque) {
+        this.opaque = opaque;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getStride() {
+        return stride;
+    }
+
+    @Override
+    public int getFormat() {
+        return format;
+    }
+
+    @Override
+    public boolean isOpaque() {
+        return opaque;
+    }
+
+    @NonNull
+    @Override
+    public int[] getArray() {
+        return pixels;
+    }
+
+    @Override
+    public int getArrayOffset() {
+        return offset;
+    }
+
+    @Override
+    public void read(@NonNull int[] target) {
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(pixels, offset + y * stride, target, y * width, width);
+        }
+    }
+
+    @Override
+    public void write(@NonNull int[] source) {
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(source, y * width, pixels, offset + y * stride, width);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * {@link PixelBuffer} backed by a Bitmap.
+ * <p>
+ * By default the pixels are copied with {@link Bitmap#getPixels} and {@link Bitmap#setPixels}, unpremultiplied.
+ * With the raw copies, ARGB_8888 bitmaps without row padding are copied with
+ * {@link Bitmap#copyPixelsToBuffer} and {@link Bitmap#copyPixelsFromBuffer} straight into the int[]
+ * the pixels are blurred in, as plain memory copies in {@link #FORMAT_ABGR_PREMULTIPLIED}.
+ * <p>
+ * Either way the int[] is a staging copy on the Java heap, the blurs never run on the Bitmap memory.
+ */
+public final class BitmapPixelBuffer implements PixelBuffer {
+
+    @Nullable
+    private Bitmap bitmap;
+    private boolean raw;
+    // Heap view of the last int[] the pixels were copied through, the arena usually hands out the same one
+    @Nullable
+    private IntBuffer wrapped;
+
+    public BitmapPixelBuffer(@NonNull Bitmap bitmap) {
+        this(bitmap, false);
+    }
+
+    public BitmapPixelBuffer(@NonNull Bitmap bitmap, boolean useRawCopies) {
+        set(bitmap, useRawCopies);
+    }
+
+    BitmapPixelBuffer() {
+    }
+
+    /**
+     * Reuses the instance for another bitmap
+     */
+    void set(@Nullable Bitmap bitmap, boolean useRawCopies) {
+        this.bitmap = bitmap;
+        // The int[] has the native byte order, the raw pixels only read as 0xAABBGGRR on little endian
+        this.raw = useRawCopies && bitmap != null
+                && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN
+                && bitmap.getConfig() == Bitmap.Config.ARGB_8888
+                && bitmap.getRowBytes() == bitmap.getWidth() * 4;
+    }
+
+    @NonNull
+    private Bitmap bitmap() {
+        if (bitmap == null) {
+            throw new IllegalStateException("No bitmap is set");
+        }
+        return bitmap;
+    }
+
+    @Override
+    public int getWidth() {
+        return bitmap().getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return bitmap().getHeight();
+    }
+
+    /**
+     * @return the width, {@link #read} and {@link #write} don't keep the row padding of the bitmap
+     */
+    @Override
+    public int getStride() {
+        return bitmap().getWidth();
+    }
+
+    @Override
+    public int getFormat() {
+        return raw ? FORMAT_ABGR_PREMULTIPLIED : FORMAT_ARGB;
+    }
+
+    @Override
+    public boolean isOpaque() {
+        return !bitmap().hasAlpha();
+    }
+
+    @Nullable
+    @Override
+    public int[] getArray() {
+        return null;
+    }
+
+    @Override
+    public int getArrayOffset() {
+        return 0;
+    }
+
+    @Override
+    public void read(@NonNull int[] pixels) {
+        Bitmap bitmap = bitmap();
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (!raw) {
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            return;
+        }
+        bitmap.copyPixelsToBuffer(wrap(pixels, width * height));
+    }
+
+    @Override
+    public void write(@NonNull int[] pixels) {
+        Bitmap bitmap = bitmap();
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (!raw) {
+            bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+            return;
+        }
+        bitmap.copyPixelsFromBuffer(wrap(pixels, width * height));
+    }
+
+    private IntBuffer wrap(int[] pixels, int size) {
+        IntBuffer wrapped = this.wrapped;
+        if (wrapped == null || wrapped.array() != pixels) {
+            wrapped = IntBuffer.wrap(pixels);
+            this.wrapped = wrapped;
+        }
+        wrapped.clear();
+        wrapped.limit(size);
+        return wrapped;
+    }
+}
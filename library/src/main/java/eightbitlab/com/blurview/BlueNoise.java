@@ -0,0 +1,164 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+import java.util.Random;
+
+/**
+ * Generates tileable blue noise with the void-and-cluster method (Ulichney, 1993).
+ * <p>
+ * Every pixel gets a unique rank. Thresholding the ranks at any level gives evenly spread points
+ * without the clumps and holes of white noise, so the noise hides the banding of a blur
+ * without adding a visible pattern of its own.
+ * <p>
+ * The energy of a pixel is the sum of a Gaussian over the set pixels around it, wrapping around the edges.
+ * The tightest cluster is the set pixel with the most energy, the largest void is the empty pixel with the least.
+ * <ol>
+ * <li>A random initial pattern is relaxed by moving the tightest cluster into the largest void until it's stable.</li>
+ * <li>The set pixels of the pattern are ranked by removing the tightest cluster one by one.</li>
+ * <li>The rest is ranked by filling the largest void one by one. Past the half this is the same
+ * as picking the tightest cluster of the empty pixels, because the energies of both add up to a constant.</li>
+ * </ol>
+ */
+final class BlueNoise {
+
+    // The sigma of the paper, bigger ones give coarser noise
+    private static final float SIGMA = 1.5f;
+    // The Gaussian is below 1% of its peak further away
+    private static final int KERNEL_RADIUS = 4;
+    private static final int INITIAL_DENSITY_PERCENT = 10;
+
+    private BlueNoise() {
+    }
+
+    /**
+     * @param size    width and height of the tile
+     * @param opacity alpha of the highest rank, from 0 to 255
+     * @return row-major alpha values of the tile, from 0 to the opacity, as in an ALPHA_8 bitmap
+     */
+    @NonNull
+    static byte[] generateAlpha(int size, int opacity, long seed) {
+        int[] ranks = generateRanks(size, seed);
+        int last = ranks.length - 1;
+        byte[] alpha = new byte[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            alpha[i] = (byte) (last == 0 ? opacity : (ranks[i] * opacity * 2 + last) / (last * 2));
+        }
+        return alpha;
+    }
+
+    /**
+     * @return row-major ranks of the tile, a permutation of 0 until size * size
+     */
+    @NonNull
+    static int[] generateRanks(int size, long seed) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive, got " + size);
+        }
+        int count = size * size;
+        float[] kernel = kernel();
+        boolean[] pattern = new boolean[count];
+        float[] energy = new float[count];
+
+        Random random = new Random(seed);
+        int initialCount = Math.max(1, count * INITIAL_DENSITY_PERCENT / 100);
+        for (int placed = 0; placed < initialCount; ) {
+            int index = random.nextInt(count);
+            if (!pattern[index]) {
+                set(pattern, energy, kernel, size, index, true);
+                placed++;
+            }
+        }
+        relax(pattern, energy, kernel, size);
+
+        boolean[] prototype = pattern.clone();
+        float[] prototypeEnergy = energy.clone();
+        int[] ranks = new int[count];
+        for (int rank = initialCount - 1; rank >= 0; rank--) {
+            int cluster = tightestCluster(pattern, energy);
+            set(pattern, energy, kernel, size, cluster, false);
+            ranks[cluster] = rank;
+        }
+
+        pattern = prototype;
+        energy = prototypeEnergy;
+        for (int rank = initialCount; rank < count; rank++) {
+            int emptiest = largestVoid(pattern, energy);
+            set(pattern, energy, kernel, size, emptiest, true);
+            ranks[emptiest] = rank;
+        }
+        return ranks;
+    }
+
+    /**
+     * Moves the tightest cluster into the largest void until the move would put it back
+     */
+    private static void relax(boolean[] pattern, float[] energy, float[] kernel, int size) {
+        // Converges much sooner in practice, the limit only guarantees the termination
+        for (int i = 0; i < pattern.length; i++) {
+            int cluster = tightestCluster(pattern, energy);
+            set(pattern, energy, kernel, size, cluster, false);
+            int emptiest = largestVoid(pattern, energy);
+            set(pattern, energy, kernel, size, emptiest, true);
+            if (emptiest == cluster) {
+                return;
+            }
+        }
+    }
+
+    private static int tightestCluster(boolean[] pattern, float[] energy) {
+        int best = -1;
+        for (int i = 0; i < pattern.length; i++) {
+            if (pattern[i] && (best < 0 || energy[i] > energy[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static int largestVoid(boolean[] pattern, float[] energy) {
+        int best = -1;
+        for (int i = 0; i < pattern.length; i++) {
+            if (!pattern[i] && (best < 0 || energy[i] < energy[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sets or clears the pixel and adds or subtracts its Gaussian from the energy around it
+     */
+    private static void set(boolean[] pattern, float[] energy, float[] kernel, int size, int index, boolean value) {
+        pattern[index] = value;
+        float sign = value ? 1f : -1f;
+        int centerX = index % size;
+        int centerY = index / size;
+        int diameter = KERNEL_RADIUS * 2 + 1;
+        for (int dy = -KERNEL_RADIUS; dy <= KERNEL_RADIUS; dy++) {
+            int row = wrap(centerY + dy, size) * size;
+            int kernelRow = (dy + KERNEL_RADIUS) * diameter + KERNEL_RADIUS;
+            for (int dx = -KERNEL_RADIUS; dx <= KERNEL_RADIUS; dx++) {
+                energy[row + wrap(centerX + dx, size)] += sign * kernel[kernelRow + dx];
+            }
+        }
+    }
+
+    // Math.floorMod is only available since API 24
+    private static int wrap(int value, int size) {
+        int result = value % size;
+        return result < 0 ? result + size : result;
+    }
+
+    private static float[] kernel() {
+        int diameter = KERNEL_RADIUS * 2 + 1;
+        float[] kernel = new float[diameter * diameter];
+        for (int dy = -KERNEL_RADIUS; dy <= KERNEL_RADIUS; dy++) {
+            for (int dx = -KERNEL_RADIUS; dx <= KERNEL_RADIUS; dx++) {
+                kernel[(dy + KERNEL_RADIUS) * diameter + dx + KERNEL_RADIUS] =
+                        (float) Math.exp(-(dx * dx + dy * dy) / (2f * SIGMA * SIGMA));
+            }
+        }
+        return kernel;
+    }
+}
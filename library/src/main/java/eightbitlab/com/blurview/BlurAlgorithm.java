@@ -38,4 +38,25 @@ public interface BlurAlgorithm {
     Bitmap.Config getSupportedBitmapConfig();
 
     void render(@NonNull Canvas canvas, @NonNull Bitmap bitmap);
+
+    /**
+     * The scaled snapshot width is rounded up to a multiple of the alignment, see {@link SizeScaler}.
+     * Every extra column is captured, blurred and uploaded for nothing, so algorithms that don't need
+     * an aligned stride should return 1.
+     *
+     * @return the width alignment in pixels, {@link SizeScaler#DEFAULT_STRIDE_ALIGNMENT} by default
+     */
+    default int getStrideAlignment() {
+        return SizeScaler.DEFAULT_STRIDE_ALIGNMENT;
+    }
+
+    /**
+     * Bigger radii are clamped by the algorithm. The pre-S controller downscales the snapshot further
+     * for such radii and blurs it with a smaller radius instead, see {@link SizeScaler#radiusDownscale}.
+     *
+     * @return the biggest blur radius the algorithm can apply, unlimited by default
+     */
+    default float getMaxBlurRadius() {
+        return Float.MAX_VALUE;
+    }
 }
@@ -0,0 +1,467 @@
+package eightbitlab.com.blurview;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.eightbitlab.blurview.BuildConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Picks the fastest {@link BlurAlgorithm} of the device, for the blur that runs below API 31.
+ * <p>
+ * The speed of RenderScript depends on the drivers, on some devices it's slower than a blur on the CPU.
+ * So on first use every candidate blurs a sample of a typical size, a third of the screen downscaled
+ * by {@link BlurController#DEFAULT_SCALE_FACTOR}, with {@link BlurController#DEFAULT_BLUR_RADIUS}.
+ * The fastest one that stays within {@link #MAX_DIFFERENCE} of the true Gaussian blur wins.
+ * <p>
+ * The benchmark runs once in the background. The decision is kept in the shared preferences,
+ * keyed by the build fingerprint of the device and the library version, so it's made again
+ * after a system update and after a library update. The preferences are read in the background too,
+ * until the decision is loaded or made {@link #select} returns {@link RenderScriptBlur}, same as before.
+ * Call {@link #preload} from {@code Application.onCreate} to have it loaded before the first BlurView is set up.
+ * <p>
+ * The decision and all the measurements are available through {@link #getDecision} and {@link #setListener},
+ * for example to report them.
+ */
+public final class BlurAlgorithmSelector {
+
+    /**
+     * Receives the decision when it's loaded from the preferences or made by the benchmark, on a background thread
+     */
+    public interface Listener {
+        void onDecision(@NonNull Decision decision);
+    }
+
+    // The names are persisted, don't rename them
+    public static final String RENDER_SCRIPT_BLUR = "RenderScriptBlur";
+    public static final String STACK_BLUR = "StackBlur";
+    public static final String SWAR_STACK_BLUR = "SwarStackBlur";
+    public static final String TRANSPOSE_BLUR = "TransposeBlur";
+    public static final String PARALLEL_BLUR = "ParallelBlur";
+    public static final String BOX_BLUR = "BoxBlur";
+    public static final String RECURSIVE_GAUSSIAN_BLUR = "RecursiveGaussianBlur";
+    public static final String DUAL_KAWASE_BLUR = "DualKawaseBlur";
+
+    static final List<String> CANDIDATES = Collections.unmodifiableList(Arrays.asList(
+            RENDER_SCRIPT_BLUR, STACK_BLUR, SWAR_STACK_BLUR, TRANSPOSE_BLUR, PARALLEL_BLUR,
+            BOX_BLUR, RECURSIVE_GAUSSIAN_BLUR, DUAL_KAWASE_BLUR
+    ));
+
+    /**
+     * The biggest allowed difference of a channel from the true Gaussian blur of the sample
+     */
+    public static final int MAX_DIFFERENCE = 12;
+
+    static final String PREFERENCES_NAME = "eightbitlab.blurview.BlurAlgorithmSelector";
+
+    private static final String TAG = "BlurAlgorithmSelector";
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 7;
+    private static final int SAMPLE_BLOCK_SIZE = 16;
+    private static final long SAMPLE_SEED = 42;
+
+    @Nullable
+    private static Decision decision;
+    // At most once per process, a failed benchmark isn't retried until the next launch
+    private static boolean loadStarted;
+    @Nullable
+    private static Listener listener;
+
+    private BlurAlgorithmSelector() {
+    }
+
+    /**
+     * Never blocks on the preferences or the benchmark. Loads the decision in the background if there's none yet.
+     *
+     * @return a new instance of the chosen algorithm, {@link RenderScriptBlur} until the decision is available
+     */
+    @NonNull
+    public static BlurAlgorithm select(@NonNull Context context) {
+        Decision decision = getDecision(context);
+        if (decision == null) {
+            return create(RENDER_SCRIPT_BLUR, context);
+        }
+        try {
+            return create(decision.getAlgorithm(), context);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Can't create " + decision.getAlgorithm() + ", falling back to " + STACK_BLUR, e);
+            return new StackBlur();
+        }
+    }
+
+    /**
+     * Loads the persisted decision in the background, or makes it with the benchmark if there's none.
+     * Meant for {@code Application.onCreate}, so the BlurViews of the first screen already get the chosen algorithm.
+     * Does nothing if the decision is already loaded or being loaded.
+     */
+    public static void preload(@NonNull Context context) {
+        loadInBackground(context);
+    }
+
+    /**
+     * Never blocks. Loads the decision in the background if there's none yet, see {@link #setListener}.
+     *
+     * @return the decision made in this process or loaded from an earlier one, null if it isn't available yet
+     */
+    @Nullable
+    public static Decision getDecision(@NonNull Context context) {
+        synchronized (BlurAlgorithmSelector.class) {
+            if (decision != null) {
+                return decision;
+            }
+        }
+        loadInBackground(context);
+        return null;
+    }
+
+    /**
+     * @param listener receives the next decisions, null to stop
+     */
+    public static void setListener(@Nullable Listener listener) {
+        synchronized (BlurAlgorithmSelector.class) {
+            BlurAlgorithmSelector.listener = listener;
+        }
+    }
+
+    /**
+     * Runs the benchmark on the calling thread and persists the decision. Takes up to a few hundred milliseconds.
+     */
+    @NonNull
+    @WorkerThread
+    public static Decision benchmark(@NonNull Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        SizeScaler.Size size = new SizeScaler(BlurController.DEFAULT_SCALE_FACTOR)
+                .scale(metrics.widthPixels, Math.max(1, metrics.heightPixels / 3));
+        int[] sample = sampleImage(size.width, size.height, SAMPLE_SEED);
+        int[] reference = sample.clone();
+        new GaussianBlur().blur(reference, size.width, size.height, BlurController.DEFAULT_BLUR_RADIUS);
+
+        List<Measurement> measurements = new ArrayList<>(CANDIDATES.size());
+        for (String candidate : CANDIDATES) {
+            measurements.add(measure(candidate, context, sample, reference, size.width, size.height));
+        }
+        Decision result = new Decision(choose(measurements, MAX_DIFFERENCE), size.width, size.height, measurements, false);
+
+        getPreferences(context).edit().putString(preferencesKey(), result.encode()).apply();
+        publish(result);
+        return result;
+    }
+
+    private static void loadInBackground(@NonNull Context context) {
+        synchronized (BlurAlgorithmSelector.class) {
+            if (loadStarted) {
+                return;
+            }
+            loadStarted = true;
+        }
+        Context applicationContext = context.getApplicationContext();
+        new Thread(() -> {
+            // Stays out of the way of the app startup
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                String encoded = getPreferences(applicationContext).getString(preferencesKey(), null);
+                Decision persisted = encoded == null ? null : Decision.decode(encoded, true);
+                if (persisted != null) {
+                    publish(persisted);
+                } else {
+                    benchmark(applicationContext);
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Blur benchmark failed", e);
+            }
+        }, "BlurView benchmark").start();
+    }
+
+    private static void publish(@NonNull Decision result) {
+        Listener listener;
+        synchronized (BlurAlgorithmSelector.class) {
+            decision = result;
+            listener = BlurAlgorithmSelector.listener;
+        }
+        if (listener != null) {
+            listener.onDecision(result);
+        }
+    }
+
+    @NonNull
+    private static Measurement measure(@NonNull String name, @NonNull Context context,
+                                       @NonNull int[] sample, @NonNull int[] reference, int width, int height) {
+        BlurAlgorithm algorithm = null;
+        Bitmap bitmap = null;
+        try {
+            algorithm = create(name, context);
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            long[] times = new long[MEASURED_RUNS];
+            Bitmap blurred = bitmap;
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                // The snapshot is drawn again before every blur in the BlurView too, so it's not timed
+                bitmap.setPixels(sample, 0, width, 0, 0, width, height);
+                long start = System.nanoTime();
+                blurred = algorithm.blur(bitmap, BlurController.DEFAULT_BLUR_RADIUS);
+                if (run >= WARMUP_RUNS) {
+                    times[run - WARMUP_RUNS] = System.nanoTime() - start;
+                }
+            }
+            int[] result = new int[width * height];
+            blurred.getPixels(result, 0, width, 0, 0, width, height);
+            Arrays.sort(times);
+            return new Measurement(name, times[MEASURED_RUNS / 2], maxChannelDifference(reference, result));
+        } catch (RuntimeException e) {
+            // RenderScript isn't available on every device
+            Log.w(TAG, name + " isn't available", e);
+            return new Measurement(name, Measurement.UNAVAILABLE, Measurement.UNAVAILABLE);
+        } finally {
+            if (algorithm != null) {
+                algorithm.destroy();
+            }
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * @return the fastest available algorithm within the max difference, or the most accurate one
+     * if none is. {@link #STACK_BLUR} if none is available.
+     */
+    @NonNull
+    static String choose(@NonNull List<Measurement> measurements, int maxDifference) {
+        Measurement fastest = null;
+        Measurement mostAccurate = null;
+        for (Measurement measurement : measurements) {
+            if (!measurement.isAvailable()) {
+                continue;
+            }
+            if (measurement.getMaxDifference() <= maxDifference
+                    && (fastest == null || measurement.getNanos() < fastest.getNanos())) {
+                fastest = measurement;
+            }
+            if (mostAccurate == null || measurement.getMaxDifference() < mostAccurate.getMaxDifference()) {
+                mostAccurate = measurement;
+            }
+        }
+        if (fastest != null) {
+            return fastest.getAlgorithm();
+        }
+        return mostAccurate != null ? mostAccurate.getAlgorithm() : STACK_BLUR;
+    }
+
+    @NonNull
+    @SuppressWarnings("deprecation")
+    static BlurAlgorithm create(@NonNull String name, @NonNull Context context) {
+        switch (name) {
+            case STACK_BLUR:
+                return new StackBlur();
+            case SWAR_STACK_BLUR:
+                return new SwarStackBlur();
+            case TRANSPOSE_BLUR:
+                return new TransposeBlur();
+            case PARALLEL_BLUR:
+                return new ParallelBlur(StackBlur::new);
+            case BOX_BLUR:
+                return new BoxBlur();
+            case RECURSIVE_GAUSSIAN_BLUR:
+                return new RecursiveGaussianBlur();
+            case DUAL_KAWASE_BLUR:
+                return new DualKawaseBlur();
+            default:
+                return new RenderScriptBlur(context);
+        }
+    }
+
+    /**
+     * Opaque blocks of random colors. The sharp edges are where the approximations of the Gaussian differ the most.
+     */
+    @NonNull
+    static int[] sampleImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int blocksX = (width + SAMPLE_BLOCK_SIZE - 1) / SAMPLE_BLOCK_SIZE;
+        int blocksY = (height + SAMPLE_BLOCK_SIZE - 1) / SAMPLE_BLOCK_SIZE;
+        int[] colors = new int[blocksX * blocksY];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int blockRow = y / SAMPLE_BLOCK_SIZE * blocksX;
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = colors[blockRow + x / SAMPLE_BLOCK_SIZE];
+            }
+        }
+        return pixels;
+    }
+
+    static int maxChannelDifference(@NonNull int[] expected, @NonNull int[] actual) {
+        int max = 0;
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                int difference = Math.abs(((expected[i] >>> shift) & 0xff) - ((actual[i] >>> shift) & 0xff));
+                max = Math.max(max, difference);
+            }
+        }
+        return max;
+    }
+
+    private static SharedPreferences getPreferences(@NonNull Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static String preferencesKey() {
+        return Build.FINGERPRINT + "/" + BuildConfig.LIBRARY_VERSION;
+    }
+
+    /**
+     * Time and accuracy of a single candidate
+     */
+    public static final class Measurement {
+
+        static final int UNAVAILABLE = -1;
+
+        private final String algorithm;
+        private final long nanos;
+        private final int maxDifference;
+
+        Measurement(@NonNull String algorithm, long nanos, int maxDifference) {
+            this.algorithm = algorithm;
+            this.nanos = nanos;
+            this.maxDifference = maxDifference;
+        }
+
+        @NonNull
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * @return median time of a blur of the sample in nanoseconds, -1 if the algorithm isn't available
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return the biggest difference of a channel from the true Gaussian blur, -1 if the algorithm isn't available
+         */
+        public int getMaxDifference() {
+            return maxDifference;
+        }
+
+        public boolean isAvailable() {
+            return nanos != UNAVAILABLE;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return algorithm + ":" + nanos + ":" + maxDifference;
+        }
+    }
+
+    /**
+     * The chosen algorithm and the measurements it was chosen from
+     */
+    public static final class Decision {
+
+        private final String algorithm;
+        private final int sampleWidth;
+        private final int sampleHeight;
+        private final List<Measurement> measurements;
+        private final boolean persisted;
+
+        Decision(@NonNull String algorithm, int sampleWidth, int sampleHeight,
+                 @NonNull List<Measurement> measurements, boolean persisted) {
+            this.algorithm = algorithm;
+            this.sampleWidth = sampleWidth;
+            this.sampleHeight = sampleHeight;
+            this.measurements = Collections.unmodifiableList(measurements);
+            this.persisted = persisted;
+        }
+
+        /**
+         * @return one of the algorithm names of {@link BlurAlgorithmSelector}
+         */
+        @NonNull
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public int getSampleWidth() {
+            return sampleWidth;
+        }
+
+        public int getSampleHeight() {
+            return sampleHeight;
+        }
+
+        @NonNull
+        public List<Measurement> getMeasurements() {
+            return measurements;
+        }
+
+        /**
+         * @return true if the decision was loaded from the preferences, false if the benchmark ran in this process
+         */
+        public boolean isPersisted() {
+            return persisted;
+        }
+
+        /**
+         * @return algorithm;width;height;name:nanos:difference;...
+         */
+        @NonNull
+        String encode() {
+            StringBuilder builder = new StringBuilder()
+                    .append(algorithm).append(';')
+                    .append(sampleWidth).append(';')
+                    .append(sampleHeight);
+            for (Measurement measurement : measurements) {
+                builder.append(';').append(measurement);
+            }
+            return builder.toString();
+        }
+
+        /**
+         * @return null if the value is malformed
+         */
+        @Nullable
+        static Decision decode(@NonNull String encoded, boolean persisted) {
+            String[] parts = encoded.split(";");
+            if (parts.length < 3 || !CANDIDATES.contains(parts[0])) {
+                return null;
+            }
+            try {
+                List<Measurement> measurements = new ArrayList<>(parts.length - 3);
+                for (int i = 3; i < parts.length; i++) {
+                    String[] fields = parts[i].split(":");
+                    if (fields.length != 3) {
+                        return null;
+                    }
+                    measurements.add(new Measurement(fields[0], Long.parseLong(fields[1]), Integer.parseInt(fields[2])));
+                }
+                return new Decision(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), measurements, persisted);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return encode();
+        }
+    }
+}
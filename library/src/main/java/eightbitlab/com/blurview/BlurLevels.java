@@ -0,0 +1,222 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A few copies of the snapshot blurred with evenly spaced radii, for animating the blur radius.
+ * <p>
+ * The radii in between the levels are rendered by drawing the two nearest levels,
+ * the upper one with the alpha of the position between them. While the snapshot stays the same,
+ * changing the radius costs 2 bitmap draws instead of a blur.
+ * The levels are only blurred again when the snapshot changes.
+ * <p>
+ * Level i is blurred with the radius maxRadius * (i + 1) / levelCount. The unblurred snapshot is kept
+ * as level -1 with the radius 0, so the radii below the first level fade in from the sharp content.
+ * Radii above maxRadius are drawn with the last level.
+ * <p>
+ * Needs an algorithm that blurs in place, see {@link BlurAlgorithm#canModifyBitmap()}.
+ */
+final class BlurLevels {
+
+    static final int MIN_LEVELS = 2;
+
+    private final int levelCount;
+    private final float maxRadius;
+    private final Bitmap[] levels;
+    // Level -1, the snapshot with the baked effects but without the blur
+    @Nullable
+    private Bitmap sharp;
+    @Nullable
+    private Paint paint;
+
+    private int[] snapshot = new int[0];
+    private int[] previousSnapshot = new int[0];
+    private int previousSize = -1;
+    private boolean ready;
+
+    /**
+     * @param levelCount amount of the blurred copies kept in memory, at least {@link #MIN_LEVELS}
+     * @param maxRadius  radius of the last level
+     */
+    BlurLevels(int levelCount, float maxRadius) {
+        if (levelCount < MIN_LEVELS) {
+            throw new IllegalArgumentException("At least " + MIN_LEVELS + " levels are needed, got " + levelCount);
+        }
+        this.levelCount = levelCount;
+        this.maxRadius = maxRadius;
+        this.levels = new Bitmap[levelCount];
+    }
+
+    int getLevelCount() {
+        return levelCount;
+    }
+
+    float getMaxRadius() {
+        return maxRadius;
+    }
+
+    /**
+     * @return the blur radius of the level, 0 for the sharp level -1
+     */
+    float levelRadius(int level) {
+        return maxRadius * (level + 1) / levelCount;
+    }
+
+    /**
+     * @return the lower of the two levels to draw for the radius, -1 for the sharp snapshot
+     */
+    int lowerLevel(float radius) {
+        int level = (int) Math.floor(radius * levelCount / maxRadius) - 1;
+        return Math.max(-1, Math.min(level, levelCount - 2));
+    }
+
+    /**
+     * @return the opacity of the upper level, lowerLevel(radius) + 1, from 0 to 1
+     */
+    float blend(float radius) {
+        int lower = lowerLevel(radius);
+        float lowerRadius = levelRadius(lower);
+        float t = (radius - lowerRadius) / (levelRadius(lower + 1) - lowerRadius);
+        return Math.max(0f, Math.min(t, 1f));
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Makes the next update blur the levels again even if the snapshot is the same,
+     * for example when the effects baked into the blurred pixels change
+     */
+    void invalidate() {
+        ready = false;
+    }
+
+    @NonNull
+    Bitmap getTopLevel() {
+        return levels[levelCount - 1];
+    }
+
+    /**
+     * Blurs the levels again if the snapshot has changed since the last update
+     *
+     * @param downscale extra downscaling of the snapshot, see {@link SizeScaler#radiusDownscale}
+     * @return true if the levels were blurred again
+     */
+    boolean update(@NonNull Bitmap snapshotBitmap, @NonNull BlurAlgorithm algorithm, int downscale) {
+        int width = snapshotBitmap.getWidth();
+        int height = snapshotBitmap.getHeight();
+        int size = width * height;
+        snapshotBitmap.getPixels(snapshotBuffer(size), 0, width, 0, 0, width, height);
+        boolean changed = swapIfChanged(size);
+        if (ready && !changed) {
+            return false;
+        }
+        sharp = copySnapshot(sharp, snapshotBitmap);
+        if (algorithm instanceof SoftwareBlur) {
+            // The other algorithms get the effects drawn on top, for the sharp level too
+            ((SoftwareBlur) algorithm).applyPostProcessing(sharp);
+        }
+        for (int level = 0; level < levelCount; level++) {
+            Bitmap bitmap = copySnapshot(levels[level], snapshotBitmap);
+            levels[level] = bitmap;
+            algorithm.blur(bitmap, SizeScaler.downscaleRadius(levelRadius(level), downscale));
+        }
+        ready = true;
+        return true;
+    }
+
+    /**
+     * @return the bitmap, or a new one if it doesn't match the snapshot, with the pixels of the snapshot
+     */
+    @NonNull
+    private Bitmap copySnapshot(@Nullable Bitmap bitmap, @NonNull Bitmap snapshotBitmap) {
+        int width = snapshotBitmap.getWidth();
+        int height = snapshotBitmap.getHeight();
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height
+                || bitmap.getConfig() != snapshotBitmap.getConfig()) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            bitmap = Bitmap.createBitmap(width, height, snapshotBitmap.getConfig());
+        }
+        bitmap.setHasAlpha(snapshotBitmap.hasAlpha());
+        bitmap.setPixels(previousSnapshot, 0, width, 0, 0, width, height);
+        return bitmap;
+    }
+
+    /**
+     * @return the buffer for the pixels of the new snapshot
+     */
+    int[] snapshotBuffer(int size) {
+        if (snapshot.length < size) {
+            snapshot = new int[size];
+        }
+        return snapshot;
+    }
+
+    /**
+     * Keeps the new snapshot as the previous one
+     *
+     * @return false if the new snapshot is the same as the previous one
+     */
+    boolean swapIfChanged(int size) {
+        if (size == previousSize && equals(snapshot, previousSnapshot, size)) {
+            return false;
+        }
+        int[] swap = previousSnapshot;
+        previousSnapshot = snapshot;
+        snapshot = swap;
+        previousSize = size;
+        return true;
+    }
+
+    // The range overload of Arrays.equals is only available since API 33
+    private static boolean equals(int[] first, int[] second, int size) {
+        for (int i = 0; i < size; i++) {
+            if (first[i] != second[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Draws the radius as the cross-fade of the two nearest levels, in the snapshot coordinates
+     */
+    void draw(@NonNull Canvas canvas, float radius) {
+        int lower = lowerLevel(radius);
+        float blend = blend(radius);
+        if (paint == null) {
+            paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        }
+        paint.setAlpha(255);
+        canvas.drawBitmap(lower < 0 ? sharp : levels[lower], 0f, 0f, paint);
+        if (blend > 0f) {
+            paint.setAlpha(Math.round(blend * 255));
+            canvas.drawBitmap(levels[lower + 1], 0f, 0f, paint);
+        }
+    }
+
+    void destroy() {
+        if (sharp != null) {
+            sharp.recycle();
+            sharp = null;
+        }
+        for (int level = 0; level < levelCount; level++) {
+            if (levels[level] != null) {
+                levels[level].recycle();
+                levels[level] = null;
+            }
+        }
+        snapshot = new int[0];
+        previousSnapshot = new int[0];
+        previousSize = -1;
+        ready = false;
+    }
+}
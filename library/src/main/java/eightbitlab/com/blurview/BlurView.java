@@ -12,6 +12,7 @@ import android.widget.FrameLayout;
 
 import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 /**
  * FrameLayout that blurs its underlying content.
@@ -82,6 +83,8 @@ public class BlurView extends FrameLayout {
     /**
      * @param target      the root to start blur from.
      * @param algorithm   sets the blur algorithm. Ignored on API >= 31 where efficient hardware rendering pipeline is used.
+     *                    {@link StackBlur} can be used to avoid the deprecated RenderScript.
+     *                    {@link Rgb565Blur} halves the snapshot memory for opaque content.
      * @param scaleFactor a scale factor to downscale the view snapshot before blurring.
      *                    Helps achieving stronger blur and potentially better performance at the expense of blur precision.
      *                    The blur radius is essentially the radius * scaleFactor.
@@ -103,7 +106,8 @@ public class BlurView extends FrameLayout {
     /**
      * @param rootView    the root to start blur from.
      *                    BlurAlgorithm is automatically picked based on the API version.
-     *                    It uses RenderEffect on API 31+, and RenderScriptBlur on older versions.
+     *                    It uses RenderEffect on API 31+, and the fastest algorithm of the device on older versions,
+     *                    see {@link BlurAlgorithmSelector}.
      * @param scaleFactor a scale factor to downscale the view snapshot before blurring.
      *                    Helps achieving stronger blur and potentially better performance at the expense of blur precision.
      *                    The blur radius is essentially the radius * scaleFactor.
@@ -116,7 +120,7 @@ public class BlurView extends FrameLayout {
             // Ignores the blur algorithm, always uses RenderNodeBlurController and RenderEffect
             algorithm = null;
         } else {
-            algorithm = new RenderScriptBlur(getContext());
+            algorithm = BlurAlgorithmSelector.select(getContext());
         }
         return setupWith(rootView, algorithm, scaleFactor, applyNoise);
     }
@@ -124,7 +128,8 @@ public class BlurView extends FrameLayout {
     /**
      * @param rootView root to start blur from.
      *                 BlurAlgorithm is automatically picked based on the API version.
-     *                 It uses RenderEffect on API 31+, and RenderScriptBlur on older versions.
+     *                 It uses RenderEffect on API 31+, and the fastest algorithm of the device on older versions,
+     *                 see {@link BlurAlgorithmSelector}.
      *                 The {@link DEFAULT_SCALE_FACTOR} scale factor for view snapshot is used.
      *                 Blue noise texture is applied by default.
      * @return {@link BlurView} to setup needed params.
@@ -142,6 +147,13 @@ public class BlurView extends FrameLayout {
         return blurController.setBlurRadius(radius);
     }
 
+    /**
+     * @see BlurViewFacade#setBlurRadiusLevels(int, float)
+     */
+    public BlurViewFacade setBlurRadiusLevels(int levelCount, float maxRadius) {
+        return blurController.setBlurRadiusLevels(levelCount, maxRadius);
+    }
+
     /**
      * @see BlurViewFacade#setOverlayColor(int)
      */
@@ -150,6 +162,20 @@ public class BlurView extends FrameLayout {
         return blurController.setOverlayColor(overlayColor);
     }
 
+    /**
+     * @see BlurViewFacade#setSaturation(float)
+     */
+    public BlurViewFacade setSaturation(float saturation) {
+        return blurController.setSaturation(saturation);
+    }
+
+    /**
+     * @see BlurViewFacade#setContentStatisticsListener(ContentStatistics.Listener)
+     */
+    public BlurViewFacade setContentStatisticsListener(@Nullable ContentStatistics.Listener listener) {
+        return blurController.setContentStatisticsListener(listener);
+    }
+
     /**
      * @see BlurViewFacade#setBlurAutoUpdate(boolean)
      */
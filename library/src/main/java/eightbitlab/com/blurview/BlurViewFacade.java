@@ -38,6 +38,22 @@ public interface BlurViewFacade {
      */
     BlurViewFacade setBlurRadius(float radius);
 
+    /**
+     * Prepares the blur for animating the radius. The snapshot is blurred with levelCount radii
+     * evenly spaced up to maxRadius, and the radii in between are drawn as a cross-fade of the two nearest levels.
+     * While the content behind the BlurView stays the same, {@link #setBlurRadius} only redraws the levels
+     * and doesn't blur again. The unblurred snapshot counts as the level of radius 0, so the radii
+     * below maxRadius / levelCount fade in from the sharp content. Radii above maxRadius are drawn with maxRadius.
+     * <p>
+     * Every level, and the sharp one, is a bitmap of the downscaled snapshot size, so levelCount bounds the extra memory.
+     * Only used below API 31, RenderEffect blurs on the GPU anyway.
+     *
+     * @param levelCount amount of the levels, at least 2. 0 disables the levels (default)
+     * @param maxRadius  radius of the last level
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setBlurRadiusLevels(int levelCount, float maxRadius);
+
     /**
      * Sets the color overlay to be drawn on top of blurred content
      *
@@ -46,6 +62,25 @@ public interface BlurViewFacade {
      */
     BlurViewFacade setOverlayColor(@ColorInt int overlayColor);
 
+    /**
+     * Changes the saturation of the blurred content, the same way as {@link android.graphics.ColorMatrix#setSaturation}.
+     *
+     * @param saturation 0 makes the content grayscale, 1 keeps it as is (default), above 1 makes it more vivid
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setSaturation(float saturation);
+
+    /**
+     * Sets the listener that receives the {@link ContentStatistics} of the blurred content after every blur update.
+     * <p>
+     * The statistics need the blurred pixels on the CPU, so the listener isn't called
+     * when the blur is done by RenderEffect on API 31+, except for the software rendering fallback.
+     *
+     * @param listener null to stop collecting the statistics
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setContentStatisticsListener(@Nullable ContentStatistics.Listener listener);
+
     /**
      * Sets the direction of the progressive blur gradient.
      * The blur will fade out in the specified direction.
@@ -0,0 +1,173 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Approximates a Gaussian blur with three successive box blurs per row and per column.
+ * <p>
+ * Every box pass is a sliding window, so the cost per pixel is the same for any radius.
+ * The box widths are derived from the same sigma that RenderScript uses for the given radius
+ * (see <a href="https://www.peterkovesi.com/papers/FastGaussianSmoothing.pdf">Kovesi, Fast Almost-Gaussian Filtering</a>).
+ * Since the widths are odd integers, the sigma of the resulting kernel differs from the requested one
+ * by less than 0.2px for any radius (see BoxBlurTest).
+ */
+public class BoxBlur extends SeparableBlur {
+
+    static final int PASSES = 3;
+    // Keeps the fixed point products from overflowing
+    private static final int MAX_BOX_RADIUS = 16383;
+
+    // sum * reciprocal(width) >>> SHIFT == sum / width, rounded
+    private static final int SHIFT = 24;
+    private static final int HALF = 1 << (SHIFT - 1);
+
+    private final int[] boxRadii = new int[PASSES];
+    private float lastBlurRadius = -1f;
+
+    private int[] line = new int[0];
+    private int[] secondLine = new int[0];
+
+    @Override
+    void blurRows(@NonNull int[] pixels, int width, int height, float blurRadius, int fromRow, int toRow) {
+        if (!prepare(blurRadius, width)) {
+            return;
+        }
+        for (int y = fromRow; y < toRow; y++) {
+            blurLine(pixels, y * width, 1, width);
+        }
+    }
+
+    @Override
+    void blurColumns(@NonNull int[] pixels, int width, int height, float blurRadius, int fromColumn, int toColumn) {
+        if (!prepare(blurRadius, height)) {
+            return;
+        }
+        for (int x = fromColumn; x < toColumn; x++) {
+            blurLine(pixels, x, width, height);
+        }
+    }
+
+    /**
+     * @return false if there's nothing to blur
+     */
+    private boolean prepare(float blurRadius, int lineLength) {
+        if (blurRadius <= 0f) {
+            return false;
+        }
+        if (blurRadius != lastBlurRadius) {
+            computeBoxRadii(radiusToSigma(blurRadius), boxRadii);
+            lastBlurRadius = blurRadius;
+        }
+        if (line.length < lineLength) {
+            line = new int[lineLength];
+            secondLine = new int[lineLength];
+        }
+        return boxRadii[PASSES - 1] > 0;
+    }
+
+    /**
+     * Picks {@link #PASSES} odd box widths whose combined variance is the closest to sigma^2.
+     *
+     * @param radii output, the box radii in ascending order. Width of a box is radius * 2 + 1
+     */
+    static void computeBoxRadii(float sigma, int[] radii) {
+        double variance = 12.0 * sigma * sigma;
+        int lower = (int) Math.floor(Math.sqrt(variance / PASSES + 1));
+        if (lower % 2 == 0) {
+            lower--;
+        }
+        int upper = lower + 2;
+        // Amount of the passes that use the lower width
+        long lowerCount = Math.round((variance - PASSES * lower * lower - 4 * PASSES * lower - 3 * PASSES) / (-4.0 * lower - 4));
+        for (int i = 0; i < PASSES; i++) {
+            int boxWidth = i < lowerCount ? lower : upper;
+            radii[i] = Math.min((boxWidth - 1) / 2, MAX_BOX_RADIUS);
+        }
+    }
+
+    private void blurLine(int[] pixels, int offset, int step, int count) {
+        int[] radii = boxRadii;
+        if (opaque) {
+            opaqueBoxPass(pixels, offset, step, line, 0, 1, count, radii[0]);
+            opaqueBoxPass(line, 0, 1, secondLine, 0, 1, count, radii[1]);
+            opaqueBoxPass(secondLine, 0, 1, pixels, offset, step, count, radii[2]);
+        } else {
+            boxPass(pixels, offset, step, line, 0, 1, count, radii[0]);
+            boxPass(line, 0, 1, secondLine, 0, 1, count, radii[1]);
+            boxPass(secondLine, 0, 1, pixels, offset, step, count, radii[2]);
+        }
+    }
+
+    /**
+     * Sliding window average of 2 * radius + 1 pixels, with the edge pixels extended
+     */
+    private static void boxPass(int[] src, int srcOffset, int srcStep,
+                                int[] dst, int dstOffset, int dstStep,
+                                int count, int radius) {
+        int last = count - 1;
+        int mul = (int) (((1L << SHIFT) + radius * 2) / (radius * 2 + 1));
+
+        int pixel = src[srcOffset];
+        int sumA = (pixel >>> 24) * (radius + 1);
+        int sumR = ((pixel >> 16) & 0xff) * (radius + 1);
+        int sumG = ((pixel >> 8) & 0xff) * (radius + 1);
+        int sumB = (pixel & 0xff) * (radius + 1);
+        for (int i = 1; i <= radius; i++) {
+            pixel = src[srcOffset + Math.min(i, last) * srcStep];
+            sumA += pixel >>> 24;
+            sumR += (pixel >> 16) & 0xff;
+            sumG += (pixel >> 8) & 0xff;
+            sumB += pixel & 0xff;
+        }
+
+        int position = dstOffset;
+        for (int i = 0; i < count; i++, position += dstStep) {
+            dst[position] = ((sumA * mul + HALF) >>> SHIFT) << 24
+                    | ((sumR * mul + HALF) >>> SHIFT) << 16
+                    | ((sumG * mul + HALF) >>> SHIFT) << 8
+                    | ((sumB * mul + HALF) >>> SHIFT);
+
+            int added = src[srcOffset + Math.min(i + radius + 1, last) * srcStep];
+            int removed = src[srcOffset + Math.max(i - radius, 0) * srcStep];
+            sumA += (added >>> 24) - (removed >>> 24);
+            sumR += ((added >> 16) & 0xff) - ((removed >> 16) & 0xff);
+            sumG += ((added >> 8) & 0xff) - ((removed >> 8) & 0xff);
+            sumB += (added & 0xff) - (removed & 0xff);
+        }
+    }
+
+    /**
+     * Same as {@link #boxPass} for opaque pixels, alpha is written as 255
+     */
+    private static void opaqueBoxPass(int[] src, int srcOffset, int srcStep,
+                                      int[] dst, int dstOffset, int dstStep,
+                                      int count, int radius) {
+        int last = count - 1;
+        int mul = (int) (((1L << SHIFT) + radius * 2) / (radius * 2 + 1));
+
+        int pixel = src[srcOffset];
+        int sumR = ((pixel >> 16) & 0xff) * (radius + 1);
+        int sumG = ((pixel >> 8) & 0xff) * (radius + 1);
+        int sumB = (pixel & 0xff) * (radius + 1);
+        for (int i = 1; i <= radius; i++) {
+            pixel = src[srcOffset + Math.min(i, last) * srcStep];
+            sumR += (pixel >> 16) & 0xff;
+            sumG += (pixel >> 8) & 0xff;
+            sumB += pixel & 0xff;
+        }
+
+        int position = dstOffset;
+        for (int i = 0; i < count; i++, position += dstStep) {
+            dst[position] = 0xff000000
+                    | ((sumR * mul + HALF) >>> SHIFT) << 16
+                    | ((sumG * mul + HALF) >>> SHIFT) << 8
+                    | ((sumB * mul + HALF) >>> SHIFT);
+
+            int added = src[srcOffset + Math.min(i + radius + 1, last) * srcStep];
+            int removed = src[srcOffset + Math.max(i - radius, 0) * srcStep];
+            sumR += ((added >> 16) & 0xff) - ((removed >> 16) & 0xff);
+            sumG += ((added >> 8) & 0xff) - ((removed >> 8) & 0xff);
+            sumB += (added & 0xff) - (removed & 0xff);
+        }
+    }
+}
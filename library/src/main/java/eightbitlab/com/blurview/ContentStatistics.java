@@ -0,0 +1,145 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+
+/**
+ * Average color, average luminance and a coarse luminance histogram of the blurred content
+ * behind a BlurView, for example to pick the overlay or the text color.
+ * <p>
+ * With a {@link SoftwareBlur}, the statistics are collected in the post processing sweep over the blurred pixels,
+ * which shares the pass with the saturation and the overlay if they are set, and is an extra pass
+ * over the downscaled pixels otherwise. Other algorithms scan the downscaled bitmap once more.
+ * The statistics describe the blurred content before the saturation, noise and overlay are applied.
+ * <p>
+ * The same instance is updated on every frame without allocations,
+ * so the values are only valid until the listener returns.
+ */
+public final class ContentStatistics {
+
+    public interface Listener {
+        /**
+         * Called on the main thread after every blur update
+         */
+        void onContentStatistics(@NonNull ContentStatistics statistics);
+    }
+
+    public static final int HISTOGRAM_BINS = 16;
+
+    // Luminance weights of the Android ColorMatrix.setSaturation, out of 256
+    private static final int RED_WEIGHT = 55;
+    private static final int GREEN_WEIGHT = 183;
+    private static final int BLUE_WEIGHT = 18;
+
+    private final int[] histogram = new int[HISTOGRAM_BINS];
+    private int pixelCount;
+    private int visibleCount;
+    private long alphaSum;
+    private long redSum;
+    private long greenSum;
+    private long blueSum;
+    private long luminanceSum;
+
+    void reset() {
+        for (int i = 0; i < HISTOGRAM_BINS; i++) {
+            histogram[i] = 0;
+        }
+        pixelCount = 0;
+        visibleCount = 0;
+        alphaSum = redSum = greenSum = blueSum = luminanceSum = 0;
+    }
+
+    void add(int pixel) {
+        pixelCount++;
+        int a = pixel >>> 24;
+        if (a == 0) {
+            return;
+        }
+        int r = (pixel >> 16) & 0xff;
+        int g = (pixel >> 8) & 0xff;
+        int b = pixel & 0xff;
+        visibleCount++;
+        alphaSum += a;
+        redSum += r * a;
+        greenSum += g * a;
+        blueSum += b * a;
+        int luminance = (r * RED_WEIGHT + g * GREEN_WEIGHT + b * BLUE_WEIGHT) >> 8;
+        luminanceSum += luminance;
+        histogram[luminance * HISTOGRAM_BINS >> 8]++;
+    }
+
+    void add(@NonNull int[] pixels, int count) {
+        for (int i = 0; i < count; i++) {
+            add(pixels[i]);
+        }
+    }
+
+    /**
+     * Collects the statistics of the whole bitmap, for the algorithms that don't expose their pixels
+     */
+    void collect(@NonNull Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int size = width * height;
+        int[] pixels = PixelBufferArena.obtain(size);
+        try {
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            reset();
+            add(pixels, size);
+        } finally {
+            PixelBufferArena.recycle(pixels);
+        }
+    }
+
+    /**
+     * @return the amount of pixels, including the transparent ones
+     */
+    public int getPixelCount() {
+        return pixelCount;
+    }
+
+    /**
+     * @return the average color. The color channels are weighted by alpha and the alpha is the average alpha
+     * of all pixels, so fully transparent pixels only make the result more transparent.
+     */
+    @ColorInt
+    public int getAverageColor() {
+        if (alphaSum == 0) {
+            return 0;
+        }
+        long half = alphaSum / 2;
+        int a = (int) ((alphaSum + pixelCount / 2) / pixelCount);
+        int r = (int) ((redSum + half) / alphaSum);
+        int g = (int) ((greenSum + half) / alphaSum);
+        int b = (int) ((blueSum + half) / alphaSum);
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    /**
+     * @return average luminance of the pixels that aren't fully transparent, from 0 to 1
+     */
+    public float getAverageLuminance() {
+        if (visibleCount == 0) {
+            return 0f;
+        }
+        return luminanceSum / (255f * visibleCount);
+    }
+
+    /**
+     * @param bin from 0 to {@link #HISTOGRAM_BINS} - 1, the bin i holds luminances
+     *            from i / HISTOGRAM_BINS to (i + 1) / HISTOGRAM_BINS
+     * @return the amount of pixels that aren't fully transparent and have the luminance of the bin
+     */
+    public int getHistogramCount(int bin) {
+        return histogram[bin];
+    }
+
+    /**
+     * @param target receives the counts of all {@link #HISTOGRAM_BINS} bins
+     */
+    public void copyHistogram(@NonNull int[] target) {
+        System.arraycopy(histogram, 0, target, 0, HISTOGRAM_BINS);
+    }
+}
@@ -0,0 +1,122 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * {@link PixelBuffer} backed by a direct buffer in the memory layout of an ARGB_8888 Bitmap,
+ * as filled by {@link android.graphics.Bitmap#copyPixelsToBuffer}: premultiplied RGBA bytes.
+ * <p>
+ * The buffer must be a little endian view, for example of {@code ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN)},
+ * so a pixel reads as 0xAABBGGRR, see {@link #FORMAT_ABGR_PREMULTIPLIED}.
+ * <p>
+ * The blurs don't run on the buffer itself. {@link SoftwareBlur} stages the pixels in a heap int[]
+ * with {@link #read}, blurs them there and copies them back with {@link #write}.
+ */
+public final class DirectPixelBuffer implements PixelBuffer {
+
+    private final IntBuffer buffer;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private boolean opaque;
+
+    /**
+     * @param buffer pixels starting at the index 0 of the buffer
+     * @param stride distance between the starts of two rows in pixels, rowBytes / 4 of a Bitmap
+     */
+    public DirectPixelBuffer(@NonNull IntBuffer buffer, int width, int height, int stride) {
+        if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+            throw new IllegalArgumentException("The buffer must be little endian");
+        }
+        if (stride < width || (long) (height - 1) * stride + width > buffer.capacity()) {
+            throw new IllegalArgumentException("The pixels don't fit into the buffer");
+        }
+        this.buffer = buffer;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+    }
+
+    public void setOpaque(boolean opaque) {
+        this.opaque = opaque;
+    }
+
+    @NonNull
+    public IntBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getStride() {
+        return stride;
+    }
+
+    @Override
+    public int getFormat() {
+        return FORMAT_ABGR_PREMULTIPLIED;
+    }
+
+    @Override
+    public boolean isOpaque() {
+        return opaque;
+    }
+
+    @Nullable
+    @Override
+    public int[] getArray() {
+        return null;
+    }
+
+    @Override
+    public int getArrayOffset() {
+        return 0;
+    }
+
+    @Override
+    public void read(@NonNull int[] pixels) {
+        int limit = buffer.limit();
+        buffer.limit(buffer.capacity());
+        if (stride == width) {
+            buffer.position(0);
+            buffer.get(pixels, 0, width * height);
+        } else {
+            for (int y = 0; y < height; y++) {
+                buffer.position(y * stride);
+                buffer.get(pixels, y * width, width);
+            }
+        }
+        buffer.position(0);
+        buffer.limit(limit);
+    }
+
+    @Override
+    public void write(@NonNull int[] pixels) {
+        int limit = buffer.limit();
+        buffer.limit(buffer.capacity());
+        if (stride == width) {
+            buffer.position(0);
+            buffer.put(pixels, 0, width * height);
+        } else {
+            for (int y = 0; y < height; y++) {
+                buffer.position(y * stride);
+                buffer.put(pixels, y * width, width);
+            }
+        }
+        buffer.position(0);
+        buffer.limit(limit);
+    }
+}
@@ -0,0 +1,68 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Conversions between the raw ARGB_8888 memory, as copied by {@link android.graphics.Bitmap#copyPixelsToBuffer},
+ * and the ARGB ints the software blurs work with.
+ * <p>
+ * The raw memory is premultiplied RGBA. Read as little endian ints, red and blue are swapped
+ * compared to the ARGB ints. The premultiplied pixels can be blurred as is, the blur is linear,
+ * but the effects that mix colors, such as the {@link PostProcessing}, expect unpremultiplied pixels.
+ */
+final class DirectPixels {
+
+    private DirectPixels() {
+    }
+
+    /**
+     * Converts 0xAABBGGRR to 0xAARRGGBB and back
+     */
+    static void swapRedBlue(@NonNull int[] pixels, int size) {
+        for (int i = 0; i < size; i++) {
+            int pixel = pixels[i];
+            pixels[i] = (pixel & 0xff00ff00) | (pixel & 0xff) << 16 | (pixel >> 16) & 0xff;
+        }
+    }
+
+    static void unpremultiply(@NonNull int[] pixels, int size) {
+        for (int i = 0; i < size; i++) {
+            int pixel = pixels[i];
+            int a = pixel >>> 24;
+            if (a == 0xff) {
+                continue;
+            }
+            if (a == 0) {
+                pixels[i] = 0;
+                continue;
+            }
+            int half = a >> 1;
+            int r = Math.min(((pixel >> 16 & 0xff) * 255 + half) / a, 255);
+            int g = Math.min(((pixel >> 8 & 0xff) * 255 + half) / a, 255);
+            int b = Math.min(((pixel & 0xff) * 255 + half) / a, 255);
+            pixels[i] = a << 24 | r << 16 | g << 8 | b;
+        }
+    }
+
+    static void premultiply(@NonNull int[] pixels, int size) {
+        for (int i = 0; i < size; i++) {
+            int pixel = pixels[i];
+            int a = pixel >>> 24;
+            if (a == 0xff) {
+                continue;
+            }
+            pixels[i] = a << 24
+                    | multiply(pixel >> 16 & 0xff, a) << 16
+                    | multiply(pixel >> 8 & 0xff, a) << 8
+                    | multiply(pixel & 0xff, a);
+        }
+    }
+
+    /**
+     * @return value * alpha / 255, rounded
+     */
+    static int multiply(int value, int alpha) {
+        int product = value * alpha + 128;
+        return (product + (product >> 8)) >> 8;
+    }
+}
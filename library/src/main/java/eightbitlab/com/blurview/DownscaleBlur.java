@@ -0,0 +1,232 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Downscales a full resolution image and blurs it, reading the source only once.
+ * <p>
+ * Meant for content that is already available as a bitmap, such as a static background image,
+ * where drawing it onto a scaled canvas and blurring it afterwards would walk the pixels twice.
+ * Every source row is area-averaged into the target rows it covers as it's read. As soon as a target
+ * row is complete, it gets the horizontal pass of the blur while it's still in the cache.
+ * The vertical pass then runs over the small target image only.
+ * <p>
+ * Any integer or fractional scale factor is supported. The result matches an exact area-average
+ * downscale followed by the same blur within 2 levels per channel (see DownscaleBlurTest).
+ */
+public class DownscaleBlur {
+
+    // Weights of the source pixels in the target pixels, for both axes.
+    // Every target pixel gets the weights summing up to exactly 1 << WEIGHT_SHIFT
+    private static final int WEIGHT_SHIFT = 8;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_SHIFT;
+    private static final int HALF = 1 << (WEIGHT_SHIFT * 2 - 1);
+
+    private final SeparableBlur blur;
+
+    // A source pixel covers at most 2 target pixels when downscaling, the first one and the next one
+    private int[] columnTargets = new int[0];
+    private int[] columnWeights = new int[0];
+    private int[] columnNextWeights = new int[0];
+    private int[] rowTargets = new int[0];
+    private int[] rowWeights = new int[0];
+    private int[] rowNextWeights = new int[0];
+
+    // Vertical sums of the current and the next target row, 4 channels per source column
+    private int[] currentRow = new int[0];
+    private int[] nextRow = new int[0];
+    // Horizontal sums of a target row, 4 channels per target column
+    private int[] targetSums = new int[0];
+    private int[] sourceLine = new int[0];
+
+    public DownscaleBlur() {
+        this(new StackBlur());
+    }
+
+    /**
+     * @param blur the blur to apply, its horizontal pass is fused with the downscaling
+     */
+    public DownscaleBlur(@NonNull SeparableBlur blur) {
+        this.blur = blur;
+    }
+
+    /**
+     * @param source      full resolution ARGB_8888 bitmap
+     * @param scaleFactor how many times to downscale, 1 or more
+     * @return a new bitmap of the downscaled size with the blurred content
+     */
+    @NonNull
+    public Bitmap blur(@NonNull Bitmap source, float scaleFactor, float blurRadius) {
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        SizeScaler.Size size = new SizeScaler(scaleFactor, true).scale(sourceWidth, sourceHeight);
+        if (sourceLine.length < sourceWidth) {
+            sourceLine = new int[sourceWidth];
+        }
+        int[] targetPixels = PixelBufferArena.obtain(size.width * size.height);
+        try {
+            run(source, null, sourceWidth, sourceHeight, targetPixels, size.width, size.height, blurRadius);
+            Bitmap target = Bitmap.createBitmap(size.width, size.height, Bitmap.Config.ARGB_8888);
+            target.setPixels(targetPixels, 0, size.width, 0, 0, size.width, size.height);
+            return target;
+        } finally {
+            PixelBufferArena.recycle(targetPixels);
+        }
+    }
+
+    /**
+     * @param source       ARGB pixels of the full resolution image, row by row
+     * @param target       receives the blurred ARGB pixels of the target size
+     * @param targetWidth  at least 1 and at most the source width
+     * @param targetHeight at least 1 and at most the source height
+     */
+    public void blur(@NonNull int[] source, int sourceWidth, int sourceHeight,
+                     @NonNull int[] target, int targetWidth, int targetHeight, float blurRadius) {
+        run(null, source, sourceWidth, sourceHeight, target, targetWidth, targetHeight, blurRadius);
+    }
+
+    private void run(Bitmap bitmap, int[] source, int sourceWidth, int sourceHeight,
+                     int[] target, int targetWidth, int targetHeight, float blurRadius) {
+        if (targetWidth < 1 || targetHeight < 1 || targetWidth > sourceWidth || targetHeight > sourceHeight) {
+            throw new IllegalArgumentException("Can't downscale " + sourceWidth + "x" + sourceHeight
+                    + " to " + targetWidth + "x" + targetHeight);
+        }
+        prepare(sourceWidth, sourceHeight, targetWidth, targetHeight);
+        int rowSize = sourceWidth * 4;
+        int[] current = currentRow;
+        int[] next = nextRow;
+        Arrays.fill(current, 0, rowSize, 0);
+        Arrays.fill(next, 0, rowSize, 0);
+
+        int targetRow = 0;
+        for (int y = 0; y < sourceHeight; y++) {
+            int[] row;
+            int offset;
+            if (bitmap != null) {
+                bitmap.getPixels(sourceLine, 0, sourceWidth, 0, y, sourceWidth, 1);
+                row = sourceLine;
+                offset = 0;
+            } else {
+                row = source;
+                offset = y * sourceWidth;
+            }
+            while (rowTargets[y] > targetRow) {
+                // The source row starts a new target row, so the current one is complete
+                finishRow(current, sourceWidth, target, targetWidth, targetHeight, targetRow, blurRadius);
+                int[] swap = current;
+                current = next;
+                next = swap;
+                Arrays.fill(next, 0, rowSize, 0);
+                targetRow++;
+            }
+            accumulate(row, offset, sourceWidth, current, rowWeights[y]);
+            if (rowNextWeights[y] != 0) {
+                accumulate(row, offset, sourceWidth, next, rowNextWeights[y]);
+            }
+        }
+        finishRow(current, sourceWidth, target, targetWidth, targetHeight, targetRow, blurRadius);
+        currentRow = current;
+        nextRow = next;
+
+        blur.blurColumns(target, targetWidth, targetHeight, blurRadius, 0, targetWidth);
+    }
+
+    private static void accumulate(int[] row, int offset, int width, int[] sums, int weight) {
+        for (int x = 0, j = 0; x < width; x++, j += 4) {
+            int pixel = row[offset + x];
+            sums[j] += (pixel >>> 24) * weight;
+            sums[j + 1] += ((pixel >> 16) & 0xff) * weight;
+            sums[j + 2] += ((pixel >> 8) & 0xff) * weight;
+            sums[j + 3] += (pixel & 0xff) * weight;
+        }
+    }
+
+    /**
+     * Downscales the vertical sums horizontally into the target row, then blurs the row
+     */
+    private void finishRow(int[] rowSums, int sourceWidth, int[] target, int targetWidth, int targetHeight,
+                           int targetRow, float blurRadius) {
+        int[] sums = targetSums;
+        Arrays.fill(sums, 0, targetWidth * 4, 0);
+        for (int x = 0, j = 0; x < sourceWidth; x++, j += 4) {
+            int t = columnTargets[x] * 4;
+            int weight = columnWeights[x];
+            sums[t] += rowSums[j] * weight;
+            sums[t + 1] += rowSums[j + 1] * weight;
+            sums[t + 2] += rowSums[j + 2] * weight;
+            sums[t + 3] += rowSums[j + 3] * weight;
+            int nextWeight = columnNextWeights[x];
+            if (nextWeight != 0) {
+                sums[t + 4] += rowSums[j] * nextWeight;
+                sums[t + 5] += rowSums[j + 1] * nextWeight;
+                sums[t + 6] += rowSums[j + 2] * nextWeight;
+                sums[t + 7] += rowSums[j + 3] * nextWeight;
+            }
+        }
+        int shift = WEIGHT_SHIFT * 2;
+        int position = targetRow * targetWidth;
+        for (int x = 0, j = 0; x < targetWidth; x++, j += 4) {
+            target[position + x] = ((sums[j] + HALF) >>> shift) << 24
+                    | ((sums[j + 1] + HALF) >>> shift) << 16
+                    | ((sums[j + 2] + HALF) >>> shift) << 8
+                    | ((sums[j + 3] + HALF) >>> shift);
+        }
+        blur.blurRows(target, targetWidth, targetHeight, blurRadius, targetRow, targetRow + 1);
+    }
+
+    private void prepare(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        if (columnTargets.length < sourceWidth) {
+            columnTargets = new int[sourceWidth];
+            columnWeights = new int[sourceWidth];
+            columnNextWeights = new int[sourceWidth];
+            currentRow = new int[sourceWidth * 4];
+            nextRow = new int[sourceWidth * 4];
+        }
+        if (rowTargets.length < sourceHeight) {
+            rowTargets = new int[sourceHeight];
+            rowWeights = new int[sourceHeight];
+            rowNextWeights = new int[sourceHeight];
+        }
+        if (targetSums.length < targetWidth * 4) {
+            targetSums = new int[targetWidth * 4];
+        }
+        computeWeights(sourceWidth, targetWidth, columnTargets, columnWeights, columnNextWeights);
+        computeWeights(sourceHeight, targetHeight, rowTargets, rowWeights, rowNextWeights);
+    }
+
+    /**
+     * Splits every source pixel between the target pixel it starts in and the next one.
+     * The weights are differences of the rounded cumulative coverage, so they sum up to exactly
+     * {@link #WEIGHT_ONE} for every target pixel.
+     */
+    static void computeWeights(int sourceSize, int targetSize, int[] targets, int[] weights, int[] nextWeights) {
+        double scale = (double) sourceSize / targetSize;
+        for (int i = 0; i < sourceSize; i++) {
+            int t = Math.min((int) (i / scale), targetSize - 1);
+            double targetStart = t * scale;
+            int start = coverage(i - targetStart, scale);
+            int end = coverage(i + 1 - targetStart, scale);
+            targets[i] = t;
+            weights[i] = end - start;
+            nextWeights[i] = t + 1 < targetSize ? coverage(i + 1 - targetStart - scale, scale) : 0;
+        }
+    }
+
+    private static int coverage(double length, double scale) {
+        return (int) Math.round(Math.min(Math.max(length, 0), scale) / scale * WEIGHT_ONE);
+    }
+
+    /**
+     * Frees the buffers
+     */
+    public void destroy() {
+        blur.destroy();
+        columnTargets = columnWeights = columnNextWeights = new int[0];
+        rowTargets = rowWeights = rowNextWeights = new int[0];
+        currentRow = nextRow = targetSums = sourceLine = new int[0];
+    }
+}
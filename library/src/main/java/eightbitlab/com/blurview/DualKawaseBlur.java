@@ -0,0 +1,310 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Dual Kawase blur (Marius Bjorge, "Bandwidth-Efficient Rendering", SIGGRAPH 2015), done in software.
+ * <p>
+ * The snapshot is halved a few times, filtering every level with 5 taps on the way down,
+ * then doubled back with 8 taps on the way up. Since every level has a quarter of the pixels
+ * of the previous one, the cost stays close to 2 full-size passes for any radius.
+ * <p>
+ * The radius is mapped onto the amount of levels and a fractional tap offset,
+ * chosen so the variance of the whole chain matches the sigma RenderScript uses for the radius.
+ * That gives a continuous radius control, which is important for animating the radius.
+ * <p>
+ * The levels are borrowed from the {@link PixelBufferArena} for every blur and given back after it,
+ * so they're shared with the other blurs and only allocated when no free buffer of the size class is left.
+ */
+public class DualKawaseBlur extends SoftwareBlur {
+
+    // Bigger offsets start showing the tap pattern, so the next level is used instead
+    static final float MAX_OFFSET = 2f;
+
+    // Fixed point position and bilinear weights
+    private static final int SUBPIXEL_SHIFT = 8;
+    private static final int SUBPIXEL_ONE = 1 << SUBPIXEL_SHIFT;
+
+    // Borrowed from the PixelBufferArena for the duration of a blur
+    private int[][] levels = new int[0][];
+    private int[] scratch;
+
+    private int iterations;
+    private float offset;
+
+    // Accumulators of the taps
+    private long sumA, sumR, sumG, sumB;
+
+    @Override
+    public void blur(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        if (blurRadius <= 0f || width < 2 || height < 2) {
+            return;
+        }
+        plan(radiusToSigma(blurRadius), width, height);
+        obtainBuffers(width, height);
+        try {
+            blurLevels(pixels, width, height);
+        } finally {
+            recycleBuffers();
+        }
+    }
+
+    private void blurLevels(int[] pixels, int width, int height) {
+        int subpixelOffset = Math.round(offset * SUBPIXEL_ONE);
+
+        int[] source = pixels;
+        int sourceWidth = width;
+        int sourceHeight = height;
+        for (int level = 1; level <= iterations; level++) {
+            int levelWidth = (sourceWidth + 1) / 2;
+            int levelHeight = (sourceHeight + 1) / 2;
+            downsample(source, sourceWidth, sourceHeight, scratch, levelWidth, levelHeight);
+            filterDown(scratch, levels[level - 1], levelWidth, levelHeight, subpixelOffset);
+            source = levels[level - 1];
+            sourceWidth = levelWidth;
+            sourceHeight = levelHeight;
+        }
+
+        for (int level = iterations; level >= 1; level--) {
+            filterUp(levels[level - 1], scratch, sourceWidth, sourceHeight, subpixelOffset);
+            int[] target = level == 1 ? pixels : levels[level - 2];
+            int targetWidth = levelSize(width, level - 1);
+            int targetHeight = levelSize(height, level - 1);
+            upsample(scratch, sourceWidth, sourceHeight, target, targetWidth, targetHeight);
+            sourceWidth = targetWidth;
+            sourceHeight = targetHeight;
+        }
+    }
+
+    int getIterations() {
+        return iterations;
+    }
+
+    float getOffset() {
+        return offset;
+    }
+
+    /**
+     * Picks the least amount of levels that can reach the sigma with an offset up to {@link #MAX_OFFSET},
+     * then finds the offset for that amount of levels.
+     */
+    void plan(float sigma, int width, int height) {
+        int maxIterations = 1;
+        while (levelSize(Math.min(width, height), maxIterations + 1) > 1) {
+            maxIterations++;
+        }
+        double variance = (double) sigma * sigma;
+        int iterations = 1;
+        // Small images can't go deeper, so they get bigger offsets instead
+        while (iterations < maxIterations && variance(iterations, MAX_OFFSET) < variance) {
+            iterations++;
+        }
+        // The variance grows monotonically with the offset
+        double low = 0;
+        double high = MAX_OFFSET;
+        while (variance(iterations, high) < variance) {
+            high *= 2;
+        }
+        for (int i = 0; i < 30; i++) {
+            double middle = (low + high) / 2;
+            if (variance(iterations, middle) < variance) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        this.iterations = iterations;
+        this.offset = (float) high;
+    }
+
+    /**
+     * Variance of the whole chain in original pixels, along one axis.
+     * Level k is scaled by 4^k. The filters contribute the squared tap offsets plus the spread of
+     * the bilinear sampling for fractional offsets, and every level adds 1/4 from the 2x2 averaging
+     * and 3/16 from the bilinear upsampling, both measured in the pixels of the bigger level.
+     */
+    private static double variance(int iterations, double offset) {
+        double down = 0.5 * moment(offset);
+        double up = 8.0 / 12 * moment(offset) + 2.0 / 12 * moment(offset * 2);
+        double levels = (1L << (2 * iterations)) - 1;
+        return levels * 4 / 3 * (down + up) + levels * 7 / 48;
+    }
+
+    /**
+     * Second moment of a bilinear tap at the offset: offset^2 + f * (1 - f), f being the fractional part
+     */
+    private static double moment(double offset) {
+        double fraction = offset - Math.floor(offset);
+        return offset * offset + fraction * (1 - fraction);
+    }
+
+    private static int levelSize(int size, int level) {
+        for (int i = 0; i < level; i++) {
+            size = (size + 1) / 2;
+        }
+        return size;
+    }
+
+    private void obtainBuffers(int width, int height) {
+        if (levels.length < iterations) {
+            levels = new int[iterations][];
+        }
+        for (int level = 1; level <= iterations; level++) {
+            levels[level - 1] = PixelBufferArena.obtain(levelSize(width, level) * levelSize(height, level));
+        }
+        scratch = PixelBufferArena.obtain(levelSize(width, 1) * levelSize(height, 1));
+    }
+
+    private void recycleBuffers() {
+        for (int level = 1; level <= iterations; level++) {
+            PixelBufferArena.recycle(levels[level - 1]);
+            levels[level - 1] = null;
+        }
+        PixelBufferArena.recycle(scratch);
+        scratch = null;
+    }
+
+    /**
+     * Averages 2x2 blocks, the last row and column are extended for odd sizes
+     */
+    private static void downsample(int[] source, int sourceWidth, int sourceHeight,
+                                   int[] target, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            int row0 = Math.min(y * 2, sourceHeight - 1) * sourceWidth;
+            int row1 = Math.min(y * 2 + 1, sourceHeight - 1) * sourceWidth;
+            for (int x = 0; x < width; x++) {
+                int x0 = Math.min(x * 2, sourceWidth - 1);
+                int x1 = Math.min(x * 2 + 1, sourceWidth - 1);
+                int p0 = source[row0 + x0];
+                int p1 = source[row0 + x1];
+                int p2 = source[row1 + x0];
+                int p3 = source[row1 + x1];
+                // Average the even and odd channels separately, 9 bits per channel are enough for the sums
+                long evenSum = (p0 & 0x00ff00ffL) + (p1 & 0x00ff00ffL) + (p2 & 0x00ff00ffL) + (p3 & 0x00ff00ffL) + 0x00020002L;
+                long oddSum = ((p0 >>> 8) & 0x00ff00ffL) + ((p1 >>> 8) & 0x00ff00ffL)
+                        + ((p2 >>> 8) & 0x00ff00ffL) + ((p3 >>> 8) & 0x00ff00ffL) + 0x00020002L;
+                target[y * width + x] = (int) (((evenSum >>> 2) & 0x00ff00ffL) | (((oddSum >>> 2) & 0x00ff00ffL) << 8));
+            }
+        }
+    }
+
+    /**
+     * Doubles the size with bilinear filtering, pixel centers aligned
+     */
+    private static void upsample(int[] source, int sourceWidth, int sourceHeight,
+                                 int[] target, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            // Odd rows are 1/4 below their source row, even rows are 1/4 above
+            int sy = y >> 1;
+            int ny = (y & 1) == 0 ? Math.max(sy - 1, 0) : Math.min(sy + 1, sourceHeight - 1);
+            int row = sy * sourceWidth;
+            int nearRow = ny * sourceWidth;
+            for (int x = 0; x < width; x++) {
+                int sx = x >> 1;
+                int nx = (x & 1) == 0 ? Math.max(sx - 1, 0) : Math.min(sx + 1, sourceWidth - 1);
+                // Weights 9, 3, 3, 1 out of 16
+                int p0 = source[row + sx];
+                int p1 = source[row + nx];
+                int p2 = source[nearRow + sx];
+                int p3 = source[nearRow + nx];
+                long evenSum = (p0 & 0x00ff00ffL) * 9 + (p1 & 0x00ff00ffL) * 3
+                        + (p2 & 0x00ff00ffL) * 3 + (p3 & 0x00ff00ffL) + 0x00080008L;
+                long oddSum = ((p0 >>> 8) & 0x00ff00ffL) * 9 + ((p1 >>> 8) & 0x00ff00ffL) * 3
+                        + ((p2 >>> 8) & 0x00ff00ffL) * 3 + ((p3 >>> 8) & 0x00ff00ffL) + 0x00080008L;
+                target[y * width + x] = (int) (((evenSum >>> 4) & 0x00ff00ffL) | (((oddSum >>> 4) & 0x00ff00ffL) << 8));
+            }
+        }
+    }
+
+    /**
+     * Center with weight 4, and 4 diagonal taps at the offset with weight 1
+     */
+    private void filterDown(int[] source, int[] target, int width, int height, int subpixelOffset) {
+        for (int y = 0; y < height; y++) {
+            int py = y << SUBPIXEL_SHIFT;
+            for (int x = 0; x < width; x++) {
+                int px = x << SUBPIXEL_SHIFT;
+                int center = source[y * width + x];
+                sumA = (long) (center >>> 24) << (SUBPIXEL_SHIFT * 2 + 2);
+                sumR = (long) ((center >> 16) & 0xff) << (SUBPIXEL_SHIFT * 2 + 2);
+                sumG = (long) ((center >> 8) & 0xff) << (SUBPIXEL_SHIFT * 2 + 2);
+                sumB = (long) (center & 0xff) << (SUBPIXEL_SHIFT * 2 + 2);
+                tap(source, width, height, px - subpixelOffset, py - subpixelOffset, 1);
+                tap(source, width, height, px + subpixelOffset, py - subpixelOffset, 1);
+                tap(source, width, height, px - subpixelOffset, py + subpixelOffset, 1);
+                tap(source, width, height, px + subpixelOffset, py + subpixelOffset, 1);
+                target[y * width + x] = average(SUBPIXEL_SHIFT * 2 + 3, 1);
+            }
+        }
+    }
+
+    /**
+     * 4 diagonal taps at the offset with weight 2, and 4 taps on the axes at double offset with weight 1
+     */
+    private void filterUp(int[] source, int[] target, int width, int height, int subpixelOffset) {
+        int doubleOffset = subpixelOffset * 2;
+        for (int y = 0; y < height; y++) {
+            int py = y << SUBPIXEL_SHIFT;
+            for (int x = 0; x < width; x++) {
+                int px = x << SUBPIXEL_SHIFT;
+                sumA = sumR = sumG = sumB = 0;
+                tap(source, width, height, px - subpixelOffset, py - subpixelOffset, 2);
+                tap(source, width, height, px + subpixelOffset, py - subpixelOffset, 2);
+                tap(source, width, height, px - subpixelOffset, py + subpixelOffset, 2);
+                tap(source, width, height, px + subpixelOffset, py + subpixelOffset, 2);
+                tap(source, width, height, px - doubleOffset, py, 1);
+                tap(source, width, height, px + doubleOffset, py, 1);
+                tap(source, width, height, px, py - doubleOffset, 1);
+                tap(source, width, height, px, py + doubleOffset, 1);
+                target[y * width + x] = average(SUBPIXEL_SHIFT * 2, 12);
+            }
+        }
+    }
+
+    /**
+     * Adds a bilinear sample at the fixed point position to the sums, the edges are extended
+     */
+    private void tap(int[] source, int width, int height, int px, int py, int weight) {
+        int x0 = px >> SUBPIXEL_SHIFT;
+        int y0 = py >> SUBPIXEL_SHIFT;
+        int fx = px & (SUBPIXEL_ONE - 1);
+        int fy = py & (SUBPIXEL_ONE - 1);
+        int x1 = Math.min(Math.max(x0 + 1, 0), width - 1);
+        int y1 = Math.min(Math.max(y0 + 1, 0), height - 1);
+        x0 = Math.min(Math.max(x0, 0), width - 1);
+        y0 = Math.min(Math.max(y0, 0), height - 1);
+
+        int w00 = (SUBPIXEL_ONE - fx) * (SUBPIXEL_ONE - fy) * weight;
+        int w10 = fx * (SUBPIXEL_ONE - fy) * weight;
+        int w01 = (SUBPIXEL_ONE - fx) * fy * weight;
+        int w11 = fx * fy * weight;
+        int p00 = source[y0 * width + x0];
+        int p10 = source[y0 * width + x1];
+        int p01 = source[y1 * width + x0];
+        int p11 = source[y1 * width + x1];
+        sumA += (long) (p00 >>> 24) * w00 + (long) (p10 >>> 24) * w10 + (long) (p01 >>> 24) * w01 + (long) (p11 >>> 24) * w11;
+        sumR += (long) ((p00 >> 16) & 0xff) * w00 + (long) ((p10 >> 16) & 0xff) * w10
+                + (long) ((p01 >> 16) & 0xff) * w01 + (long) ((p11 >> 16) & 0xff) * w11;
+        sumG += (long) ((p00 >> 8) & 0xff) * w00 + (long) ((p10 >> 8) & 0xff) * w10
+                + (long) ((p01 >> 8) & 0xff) * w01 + (long) ((p11 >> 8) & 0xff) * w11;
+        sumB += (long) (p00 & 0xff) * w00 + (long) (p10 & 0xff) * w10 + (long) (p01 & 0xff) * w01 + (long) (p11 & 0xff) * w11;
+    }
+
+    /**
+     * @return the sums divided by divisor * 2^shift, rounded and packed
+     */
+    private int average(int shift, int divisor) {
+        long half = ((long) divisor << shift) >> 1;
+        long a = (sumA + half) / divisor >> shift;
+        long r = (sumR + half) / divisor >> shift;
+        long g = (sumG + half) / divisor >> shift;
+        long b = (sumB + half) / divisor >> shift;
+        return (int) (a << 24 | r << 16 | g << 8 | b);
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        levels = new int[0][];
+    }
+}
@@ -0,0 +1,104 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Separable convolution with a true (sampled) Gaussian, the quality reference for the other software blurs.
+ * <p>
+ * The cost per pixel grows linearly with the radius, but the inner loop is integer-only
+ * thanks to the fixed point weights. The kernels are shared through {@link GaussianKernelCache},
+ * so changing the radius doesn't rebuild them.
+ * <p>
+ * The sigma is the same as the one RenderScript uses for a given radius.
+ * It's capped at {@link GaussianKernelCache#MAX_SIGMA}, larger radii are left to the extra downscale,
+ * see {@link #getMaxBlurRadius()}.
+ */
+public class GaussianBlur extends SeparableBlur {
+
+    private static final int HALF = 1 << (GaussianKernel.SHIFT - 1);
+    // The radius with the largest sigma the kernel cache hands out
+    static final float MAX_RADIUS = sigmaToRadius(GaussianKernelCache.MAX_SIGMA);
+
+    private GaussianKernel kernel;
+    private int kernelKey = -1;
+    // A single row or column with the extended edges around it, so the inner loop has no bounds checks
+    private int[] line = new int[0];
+
+    @Override
+    public float getMaxBlurRadius() {
+        return MAX_RADIUS;
+    }
+
+    @Override
+    void blurRows(@NonNull int[] pixels, int width, int height, float blurRadius, int fromRow, int toRow) {
+        if (!prepare(blurRadius, width)) {
+            return;
+        }
+        for (int y = fromRow; y < toRow; y++) {
+            blurLine(pixels, y * width, 1, width);
+        }
+    }
+
+    @Override
+    void blurColumns(@NonNull int[] pixels, int width, int height, float blurRadius, int fromColumn, int toColumn) {
+        if (!prepare(blurRadius, height)) {
+            return;
+        }
+        for (int x = fromColumn; x < toColumn; x++) {
+            blurLine(pixels, x, width, height);
+        }
+    }
+
+    /**
+     * @return false if there's nothing to blur
+     */
+    private boolean prepare(float blurRadius, int lineLength) {
+        if (blurRadius <= 0f) {
+            return false;
+        }
+        float sigma = radiusToSigma(blurRadius);
+        int key = GaussianKernelCache.quantize(sigma);
+        if (key != kernelKey) {
+            kernel = GaussianKernelCache.get(sigma);
+            kernelKey = key;
+        }
+        int size = lineLength + kernel.radius * 2;
+        if (line.length < size) {
+            line = new int[size];
+        }
+        return true;
+    }
+
+    private void blurLine(int[] pixels, int offset, int step, int count) {
+        int[] line = this.line;
+        int[] weights = kernel.weights;
+        int radius = kernel.radius;
+        int taps = weights.length;
+
+        int first = pixels[offset];
+        int last = pixels[offset + (count - 1) * step];
+        for (int i = 0; i < radius; i++) {
+            line[i] = first;
+            line[radius + count + i] = last;
+        }
+        for (int i = 0, position = offset; i < count; i++, position += step) {
+            line[radius + i] = pixels[position];
+        }
+
+        for (int i = 0, position = offset; i < count; i++, position += step) {
+            int sumA = HALF, sumR = HALF, sumG = HALF, sumB = HALF;
+            for (int k = 0; k < taps; k++) {
+                int pixel = line[i + k];
+                int weight = weights[k];
+                sumA += (pixel >>> 24) * weight;
+                sumR += ((pixel >> 16) & 0xff) * weight;
+                sumG += ((pixel >> 8) & 0xff) * weight;
+                sumB += (pixel & 0xff) * weight;
+            }
+            pixels[position] = (sumA >>> GaussianKernel.SHIFT) << 24
+                    | (sumR >>> GaussianKernel.SHIFT) << 16
+                    | (sumG >>> GaussianKernel.SHIFT) << 8
+                    | (sumB >>> GaussianKernel.SHIFT);
+        }
+    }
+}
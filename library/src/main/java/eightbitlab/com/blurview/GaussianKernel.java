@@ -0,0 +1,35 @@
+package eightbitlab.com.blurview;
+
+/**
+ * Sampled Gaussian with fixed point weights, symmetric around {@link #radius}.
+ * The weights add up to exactly 1 << {@link #SHIFT}, so a solid color stays the same after the blur.
+ * Instances are immutable and shared through {@link GaussianKernelCache}.
+ */
+final class GaussianKernel {
+
+    static final int SHIFT = 16;
+
+    final float sigma;
+    final int radius;
+    final int[] weights;
+
+    GaussianKernel(float sigma) {
+        this.sigma = sigma;
+        radius = (int) Math.ceil(sigma * 3);
+        weights = new int[radius * 2 + 1];
+
+        double[] exact = new double[weights.length];
+        double total = 0;
+        for (int i = -radius; i <= radius; i++) {
+            exact[i + radius] = Math.exp(-(i * i) / (2.0 * sigma * sigma));
+            total += exact[i + radius];
+        }
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (int) Math.round(exact[i] / total * (1 << SHIFT));
+            sum += weights[i];
+        }
+        // Put the rounding error into the center, where it's the least noticeable
+        weights[radius] += (1 << SHIFT) - sum;
+    }
+}
@@ -0,0 +1,86 @@
+package eightbitlab.com.blurview;
+
+/**
+ * Process-wide cache of {@link GaussianKernel}s, keyed by sigma quantized to {@link #SIGMA_STEP}.
+ * <p>
+ * Holds up to {@link #CAPACITY} kernels and evicts the least recently used one when full.
+ * It's a plain array instead of a map, so lookups don't box the keys and don't allocate at all.
+ * Sweeping the radius back and forth (e.g. with a SeekBar) only creates new kernels the first time.
+ */
+public final class GaussianKernelCache {
+
+    static final float SIGMA_STEP = 0.25f;
+    static final int CAPACITY = 64;
+    // Keeps the kernels from getting absurdly wide, 3 * sigma taps on each side.
+    // GaussianBlur reports the matching radius as its maximum, so larger radii are downscaled instead
+    static final float MAX_SIGMA = 100f;
+
+    private static final int[] keys = new int[CAPACITY];
+    private static final GaussianKernel[] kernels = new GaussianKernel[CAPACITY];
+    private static final long[] lastUsed = new long[CAPACITY];
+    private static int size;
+    private static long clock;
+
+    private static long hitCount;
+    private static long missCount;
+
+    private GaussianKernelCache() {
+    }
+
+    static synchronized GaussianKernel get(float sigma) {
+        int key = quantize(sigma);
+        clock++;
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                hitCount++;
+                lastUsed[i] = clock;
+                return kernels[i];
+            }
+        }
+        missCount++;
+        int slot = size < CAPACITY ? size++ : leastRecentlyUsed();
+        keys[slot] = key;
+        kernels[slot] = new GaussianKernel(key * SIGMA_STEP);
+        lastUsed[slot] = clock;
+        return kernels[slot];
+    }
+
+    static int quantize(float sigma) {
+        float clamped = Math.min(Math.max(sigma, SIGMA_STEP), MAX_SIGMA);
+        return Math.round(clamped / SIGMA_STEP);
+    }
+
+    private static int leastRecentlyUsed() {
+        int slot = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastUsed[i] < lastUsed[slot]) {
+                slot = i;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * @return amount of lookups that found a cached kernel since the process start
+     */
+    public static synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return amount of lookups that had to create a new kernel since the process start
+     */
+    public static synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Drops all cached kernels, the counters are kept
+     */
+    public static synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            kernels[i] = null;
+        }
+        size = 0;
+    }
+}
@@ -30,11 +30,26 @@ public class NoOpController implements BlurController {
         return this;
     }
 
+    @Override
+    public BlurViewFacade setBlurRadiusLevels(int levelCount, float maxRadius) {
+        return this;
+    }
+
     @Override
     public BlurViewFacade setOverlayColor(int overlayColor) {
         return this;
     }
 
+    @Override
+    public BlurViewFacade setSaturation(float saturation) {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setContentStatisticsListener(@Nullable ContentStatistics.Listener listener) {
+        return this;
+    }
+
     @Override
     public BlurViewFacade setFrameClearDrawable(@Nullable Drawable windowBackground) {
         return this;
@@ -1,43 +1,165 @@
 package eightbitlab.com.blurview;
 
-import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Shader;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-class Noise {
-    private static Paint noisePaint;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
-    static void apply(Canvas canvas, Context context, int width, int height) {
-        initPaint(context);
-        canvas.drawRect(0, 0, width, height, noisePaint);
+/**
+ * The blue noise texture drawn over the blurred content.
+ * <p>
+ * The tiles are generated by {@link BlueNoise} on a background thread, one per size and opacity,
+ * and kept for the lifetime of the process. Until a tile is ready the noise is skipped,
+ * so the first frame never waits for it. The callers get notified on the main thread to draw it.
+ * <p>
+ * A tile is an {@link Bitmap.Config#ALPHA_8} bitmap with the opacity already applied,
+ * drawn with SRC_ATOP, so it darkens the content by up to the opacity.
+ */
+final class Noise {
+
+    static final int TILE_SIZE = 64;
+    // 15% opacity
+    static final int OPACITY = 38;
+    // Fixed, so the noise looks the same on every launch
+    private static final long SEED = 0x626c7572L;
+
+    private static final Map<Long, Tile> tiles = new HashMap<>();
+    // Callbacks of the tiles that are being generated
+    private static final Map<Long, ArrayList<Runnable>> pending = new HashMap<>();
+    @Nullable
+    private static Handler mainHandler;
+
+    private Noise() {
+    }
+
+    /**
+     * Draws the noise over the content of the canvas
+     *
+     * @param onReady called on the main thread when the tile is ready, if it isn't yet
+     * @return false if the tile isn't ready yet and nothing was drawn
+     */
+    static boolean apply(@NonNull Canvas canvas, int width, int height, @Nullable Runnable onReady) {
+        Tile tile = getTile(onReady);
+        if (tile == null) {
+            return false;
+        }
+        canvas.drawRect(0, 0, width, height, tile.getPaint());
+        return true;
+    }
+
+    /**
+     * @return the default tile, or null if it isn't ready yet
+     */
+    @Nullable
+    static Tile getTile(@Nullable Runnable onReady) {
+        return getTile(TILE_SIZE, OPACITY, onReady);
     }
 
-    private static void initPaint(Context context) {
-        if (noisePaint == null) {
-            Bitmap alphaBitmap = getNoiseBitmap(context);
-            noisePaint = new Paint();
-            noisePaint.setAntiAlias(true);
-            noisePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_ATOP));
-            noisePaint.setShader(new BitmapShader(alphaBitmap, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
+    /**
+     * Never blocks. If the tile isn't ready yet, starts generating it in the background.
+     *
+     * @param onReady called once on the main thread when the tile is ready, if it isn't yet.
+     *                The same callback is only registered once.
+     * @return the tile, or null if it isn't ready yet
+     */
+    @Nullable
+    static Tile getTile(int size, int opacity, @Nullable Runnable onReady) {
+        long key = (long) size << 32 | opacity;
+        synchronized (tiles) {
+            Tile tile = tiles.get(key);
+            if (tile != null) {
+                return tile;
+            }
+            ArrayList<Runnable> callbacks = pending.get(key);
+            if (callbacks == null) {
+                callbacks = new ArrayList<>();
+                pending.put(key, callbacks);
+                generate(key, size, opacity);
+            }
+            if (onReady != null && !callbacks.contains(onReady)) {
+                callbacks.add(onReady);
+            }
+            return null;
         }
     }
 
-    @NonNull
-    private static Bitmap getNoiseBitmap(Context context) {
-        Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), com.eightbitlab.blurview.R.drawable.blue_noise);
-        Bitmap alphaBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(alphaBitmap);
-        Paint paint = new Paint();
-        paint.setAlpha(38); // 15% opacity
-        canvas.drawBitmap(bitmap, 0, 0, paint);
-        return alphaBitmap;
+    private static void generate(long key, int size, int opacity) {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            Tile tile = new Tile(size, BlueNoise.generateAlpha(size, opacity, SEED));
+            ArrayList<Runnable> callbacks;
+            synchronized (tiles) {
+                tiles.put(key, tile);
+                callbacks = pending.remove(key);
+                if (mainHandler == null) {
+                    mainHandler = new Handler(Looper.getMainLooper());
+                }
+            }
+            for (Runnable callback : callbacks) {
+                mainHandler.post(callback);
+            }
+        }, "BlurView noise");
+        thread.start();
+    }
+
+    static final class Tile {
+        final int size;
+        /**
+         * Row-major alpha of the tile, from 0 to the opacity
+         */
+        @NonNull
+        final byte[] alpha;
+        // Created on the main thread, on the first draw
+        @Nullable
+        private Bitmap bitmap;
+        @Nullable
+        private Paint paint;
+
+        Tile(int size, @NonNull byte[] alpha) {
+            this.size = size;
+            this.alpha = alpha;
+        }
+
+        @NonNull
+        Bitmap getBitmap() {
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ALPHA_8);
+                if (bitmap.getRowBytes() == size) {
+                    bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(alpha));
+                } else {
+                    // Padded rows, Android converts the pixels instead
+                    int[] pixels = new int[alpha.length];
+                    for (int i = 0; i < alpha.length; i++) {
+                        pixels[i] = alpha[i] << 24;
+                    }
+                    bitmap.setPixels(pixels, 0, size, 0, 0, size, size);
+                }
+            }
+            return bitmap;
+        }
+
+        @NonNull
+        Paint getPaint() {
+            if (paint == null) {
+                paint = new Paint();
+                paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_ATOP));
+                paint.setShader(new BitmapShader(getBitmap(), Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
+            }
+            return paint;
+        }
     }
 }
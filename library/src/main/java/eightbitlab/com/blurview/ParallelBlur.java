@@ -0,0 +1,235 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs a {@link SeparableBlur} on several cores.
+ * <p>
+ * The horizontal pass is split into stripes of rows and the vertical pass into stripes of columns.
+ * The stripes are processed on a shared bounded worker pool, with a barrier between the passes.
+ * Each stripe has its own instance of the blur to keep the scratch buffers thread confined,
+ * so the result is bit-identical to the single-threaded blur.
+ * <p>
+ * Small images are blurred on the calling thread, where the hand-off would cost more than it saves.
+ * <p>
+ * A pass always waits for all of its stripes, even if one of them fails, so no worker is left writing
+ * into the pixels after the call returns. The first failure is then rethrown on the calling thread.
+ */
+public class ParallelBlur extends SoftwareBlur {
+
+    /**
+     * Creates a new instance of the blur for every stripe
+     */
+    public interface Factory {
+        @NonNull
+        SeparableBlur create();
+    }
+
+    /**
+     * Images with less pixels than that are blurred on a single thread
+     */
+    public static final int MIN_PARALLEL_PIXELS = 128 * 128;
+
+    // Leaves one core for the calling thread, which always takes a stripe as well
+    private static final int POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static ExecutorService executor;
+
+    private final Stripe[] stripes;
+
+    /**
+     * Uses all available cores
+     *
+     * @param factory creates the blur that processes the stripes
+     */
+    public ParallelBlur(@NonNull Factory factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param factory     creates the blur that processes the stripes
+     * @param parallelism amount of stripes per pass, including the one done by the calling thread.
+     *                    The stripes run concurrently as long as the shared pool has free workers,
+     *                    which is bounded by the amount of available cores.
+     */
+    public ParallelBlur(@NonNull Factory factory, int parallelism) {
+        int stripeCount = Math.max(1, parallelism);
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(factory.create());
+        }
+    }
+
+    public int getParallelism() {
+        return stripes.length;
+    }
+
+    @Override
+    public float getMaxBlurRadius() {
+        return stripes[0].blur.getMaxBlurRadius();
+    }
+
+    @Override
+    public void blur(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        if (stripes.length == 1 || width * height < MIN_PARALLEL_PIXELS) {
+            stripes[0].blur.blur(pixels, width, height, blurRadius);
+            return;
+        }
+        runPass(pixels, width, height, blurRadius, height, true);
+        runPass(pixels, width, height, blurRadius, width, false);
+    }
+
+    @Override
+    public void blurOpaque(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        setOpaque(true);
+        try {
+            blur(pixels, width, height, blurRadius);
+        } finally {
+            setOpaque(false);
+        }
+    }
+
+    private void setOpaque(boolean opaque) {
+        for (Stripe stripe : stripes) {
+            stripe.blur.opaque = opaque;
+        }
+    }
+
+    private void runPass(int[] pixels, int width, int height, float blurRadius, int lines, boolean rows) {
+        int count = Math.min(stripes.length, lines);
+        CountDownLatch barrier = new CountDownLatch(count - 1);
+        for (int i = 0; i < count; i++) {
+            Stripe stripe = stripes[i];
+            stripe.set(pixels, width, height, blurRadius, rows, lines * i / count, lines * (i + 1) / count, barrier);
+            if (i > 0) {
+                getExecutor().execute(stripe);
+            }
+        }
+        Throwable failure = null;
+        try {
+            // The calling thread does its share of the work while waiting
+            stripes[0].process();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        } finally {
+            awaitUninterruptibly(barrier);
+        }
+        for (int i = 1; i < count; i++) {
+            Throwable stripeFailure = stripes[i].failure;
+            if (stripeFailure != null) {
+                if (failure == null) {
+                    failure = stripeFailure;
+                } else {
+                    failure.addSuppressed(stripeFailure);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            stripes[i].clear();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw (Error) failure;
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch barrier) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                barrier.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(POOL_SIZE, new ThreadFactory() {
+                private int count;
+
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "BlurView worker " + count++);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        for (Stripe stripe : stripes) {
+            stripe.blur.destroy();
+        }
+    }
+
+    private static class Stripe implements Runnable {
+        final SeparableBlur blur;
+
+        private int[] pixels;
+        private int width;
+        private int height;
+        private float blurRadius;
+        private boolean rows;
+        private int from;
+        private int to;
+        private CountDownLatch barrier;
+        // Written before the barrier is counted down, so it is visible to the caller after the await
+        private Throwable failure;
+
+        Stripe(SeparableBlur blur) {
+            this.blur = blur;
+        }
+
+        void set(int[] pixels, int width, int height, float blurRadius, boolean rows, int from, int to, CountDownLatch barrier) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.blurRadius = blurRadius;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.barrier = barrier;
+            this.failure = null;
+        }
+
+        void clear() {
+            pixels = null;
+            barrier = null;
+            failure = null;
+        }
+
+        void process() {
+            if (rows) {
+                blur.blurRows(pixels, width, height, blurRadius, from, to);
+            } else {
+                blur.blurColumns(pixels, width, height, blurRadius, from, to);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                process();
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            } finally {
+                barrier.countDown();
+            }
+        }
+    }
+}
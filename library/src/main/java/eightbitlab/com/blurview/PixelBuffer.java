@@ -0,0 +1,74 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Pixels of an image, wherever they're stored: an int[] ({@link ArrayPixelBuffer}),
+ * a direct buffer in the Bitmap memory layout ({@link DirectPixelBuffer}) or a Bitmap ({@link BitmapPixelBuffer}).
+ * <p>
+ * The software blurs take a PixelBuffer in {@link SoftwareBlur#blur(PixelBuffer, float)}, which the Bitmap API
+ * delegates to, so the same code path runs on a plain JVM and outside of the views.
+ * <p>
+ * Buffers backed by a packed int[] are blurred in place. The others are copied into a packed ARGB int[]
+ * with {@link #read} and back with {@link #write}.
+ */
+public interface PixelBuffer {
+
+    /**
+     * Unpremultiplied ARGB ints, as returned by {@link android.graphics.Bitmap#getPixels}
+     */
+    int FORMAT_ARGB = 0;
+    /**
+     * Premultiplied ARGB ints, as stored in the Bitmap memory apart from the byte order
+     */
+    int FORMAT_ARGB_PREMULTIPLIED = 1;
+    /**
+     * The raw memory of an ARGB_8888 Bitmap read as little endian ints: premultiplied 0xAABBGGRR.
+     * The blurs treat red and blue the same, so the pixels are only swapped for the post processing.
+     */
+    int FORMAT_ABGR_PREMULTIPLIED = 2;
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * @return distance between the starts of two rows, in pixels
+     */
+    int getStride();
+
+    /**
+     * @return {@link #FORMAT_ARGB}, {@link #FORMAT_ARGB_PREMULTIPLIED} or {@link #FORMAT_ABGR_PREMULTIPLIED}
+     */
+    int getFormat();
+
+    /**
+     * @return true if all pixels are known to have alpha 255
+     */
+    boolean isOpaque();
+
+    /**
+     * @return the backing array in the ARGB ints of the format, with the row y starting at
+     * {@link #getArrayOffset()} + y * {@link #getStride()}. Null if the pixels aren't stored in an int[].
+     */
+    @Nullable
+    int[] getArray();
+
+    int getArrayOffset();
+
+    /**
+     * Copies the pixels in the ARGB ints of the format
+     *
+     * @param pixels receives width * height pixels, row by row, without padding
+     */
+    void read(@NonNull int[] pixels);
+
+    /**
+     * Copies the pixels back
+     *
+     * @param pixels width * height pixels in the ARGB ints of the format, row by row, without padding.
+     *               Can be changed by the copy.
+     */
+    void write(@NonNull int[] pixels);
+}
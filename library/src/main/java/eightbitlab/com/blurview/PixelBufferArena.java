@@ -0,0 +1,263 @@
+package eightbitlab.com.blurview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shared scratch int[] buffers of the software blurs.
+ * <p>
+ * Every BlurView used to keep its own image-sized buffers, even though the blurs of all BlurViews
+ * run one after another on the main thread. Here the buffers are borrowed for the duration of a blur
+ * with {@link #obtain} and given back with {@link #recycle}, so BlurViews of a similar size share them
+ * and the steady-state frames allocate nothing.
+ * <p>
+ * The sizes are rounded up to size classes of 2^n and 1.5 * 2^n ints, so a buffer wastes at most a third
+ * of its memory and slightly different sizes still share a buffer. Every thread has its own buckets,
+ * so no locks are contended on the hot path.
+ * <p>
+ * The free buffers are dropped when the last blur controller is destroyed, when the system asks
+ * the app to trim its memory, or with {@link #trim()}.
+ * <p>
+ * Every pool counts its borrowed buffers per class, and only takes back as many as it handed out,
+ * so recycling arrays the arena didn't create can't grow the pool or throw off the byte counts. Sizes above {@link #MAX_CLASS_SIZE}
+ * are allocated directly and never pooled.
+ */
+public final class PixelBufferArena {
+
+    // The smallest class is 4 KB, smaller buffers aren't worth sharing
+    static final int MIN_CLASS_BITS = 10;
+    static final int MAX_CLASS_BITS = 30;
+    static final int MAX_CLASS_SIZE = 1 << MAX_CLASS_BITS;
+    static final int CLASS_COUNT = (MAX_CLASS_BITS - MIN_CLASS_BITS) * 2 + 1;
+    // Nested blurs borrow a few buffers of the same class at once, like TransposeBlur in a SoftwareBlur
+    static final int MAX_FREE_PER_CLASS = 4;
+
+    private static final Map<Thread, Pool> pools = new WeakHashMap<>();
+    private static final ThreadLocal<Pool> localPool = new ThreadLocal<Pool>() {
+        @Override
+        protected Pool initialValue() {
+            Pool pool = new Pool();
+            synchronized (pools) {
+                pools.put(Thread.currentThread(), pool);
+            }
+            return pool;
+        }
+    };
+
+    private static final ComponentCallbacks2 trimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trim();
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+
+        // Deprecated in favor of onTrimMemory, but still has to be implemented
+        @SuppressWarnings("deprecation")
+        @Override
+        public void onLowMemory() {
+            trim();
+        }
+    };
+
+    private static int users;
+
+    private PixelBufferArena() {
+    }
+
+    /**
+     * Borrows a buffer of at least the size. The content is undefined.
+     *
+     * @return a buffer with the length of the size class of the size
+     */
+    @NonNull
+    public static int[] obtain(int size) {
+        if (size > MAX_CLASS_SIZE) {
+            // Bigger than any class, not worth pooling
+            return new int[size];
+        }
+        return localPool.get().obtain(classIndex(size));
+    }
+
+    /**
+     * Gives back a buffer obtained on the same thread. Other arrays are ignored.
+     */
+    public static void recycle(@NonNull int[] buffer) {
+        if (buffer.length > MAX_CLASS_SIZE) {
+            return;
+        }
+        int index = classIndex(buffer.length);
+        if (classSize(index) == buffer.length) {
+            localPool.get().recycle(buffer, index);
+        }
+    }
+
+    /**
+     * Drops the free buffers of all threads. Borrowed buffers are dropped when they're recycled.
+     */
+    public static void trim() {
+        for (Pool pool : snapshotPools()) {
+            pool.trim();
+        }
+    }
+
+    /**
+     * @return memory of all buffers created by the arena that are still alive, borrowed or free
+     */
+    public static long getAllocatedBytes() {
+        long bytes = 0;
+        for (Pool pool : snapshotPools()) {
+            bytes += pool.getAllocatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return memory of the free buffers, the amount {@link #trim()} would release
+     */
+    public static long getRetainedBytes() {
+        long bytes = 0;
+        for (Pool pool : snapshotPools()) {
+            bytes += pool.getRetainedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Called by the blur controllers, the first user starts listening to the memory trim callbacks
+     */
+    static void register(@NonNull Context context) {
+        synchronized (PixelBufferArena.class) {
+            if (users++ == 0) {
+                context.getApplicationContext().registerComponentCallbacks(trimCallbacks);
+            }
+        }
+    }
+
+    /**
+     * The last user releases the free buffers and stops listening to the memory trim callbacks
+     */
+    static void unregister(@NonNull Context context) {
+        synchronized (PixelBufferArena.class) {
+            if (users > 0 && --users == 0) {
+                context.getApplicationContext().unregisterComponentCallbacks(trimCallbacks);
+                trim();
+            }
+        }
+    }
+
+    /**
+     * @return the smallest class that fits the size. Class 2k holds 2^(MIN_CLASS_BITS + k) ints,
+     * class 2k + 1 holds 1.5 times as much.
+     * @throws IllegalArgumentException if the size is above {@link #MAX_CLASS_SIZE}
+     */
+    static int classIndex(int size) {
+        if (size > MAX_CLASS_SIZE) {
+            throw new IllegalArgumentException("No size class for " + size + " ints");
+        }
+        if (size <= 1 << MIN_CLASS_BITS) {
+            return 0;
+        }
+        // 2^(bits - 1) < size <= 2^bits
+        int bits = 32 - Integer.numberOfLeadingZeros(size - 1);
+        if (size <= 3 << (bits - 2)) {
+            return (bits - 1 - MIN_CLASS_BITS) * 2 + 1;
+        }
+        return (bits - MIN_CLASS_BITS) * 2;
+    }
+
+    static int classSize(int index) {
+        int bits = MIN_CLASS_BITS + index / 2;
+        return (index & 1) == 0 ? 1 << bits : 3 << (bits - 1);
+    }
+
+    private static ArrayList<Pool> snapshotPools() {
+        synchronized (pools) {
+            return new ArrayList<>(pools.values());
+        }
+    }
+
+    /**
+     * Buckets of a single thread. Only the owner thread obtains and recycles,
+     * the lock is there for the trim and the reports from the other threads.
+     */
+    private static final class Pool {
+        private final int[][][] free = new int[CLASS_COUNT][MAX_FREE_PER_CLASS][];
+        private final int[] freeCount = new int[CLASS_COUNT];
+        // Buffers handed out and not recycled yet, anything recycled beyond that isn't ours
+        private final int[] borrowedCount = new int[CLASS_COUNT];
+        private long allocatedBytes;
+        private long retainedBytes;
+
+        synchronized int[] obtain(int index) {
+            borrowedCount[index]++;
+            int count = freeCount[index];
+            if (count > 0) {
+                int[] buffer = free[index][--count];
+                free[index][count] = null;
+                freeCount[index] = count;
+                retainedBytes -= bytes(index);
+                return buffer;
+            }
+            allocatedBytes += bytes(index);
+            return new int[classSize(index)];
+        }
+
+        synchronized void recycle(int[] buffer, int index) {
+            int count = freeCount[index];
+            if (borrowedCount[index] == 0 || contains(free[index], count, buffer)) {
+                return;
+            }
+            borrowedCount[index]--;
+            if (count == MAX_FREE_PER_CLASS) {
+                allocatedBytes -= bytes(index);
+                return;
+            }
+            free[index][count] = buffer;
+            freeCount[index] = count + 1;
+            retainedBytes += bytes(index);
+        }
+
+        synchronized void trim() {
+            for (int index = 0; index < CLASS_COUNT; index++) {
+                for (int i = 0; i < freeCount[index]; i++) {
+                    free[index][i] = null;
+                }
+                freeCount[index] = 0;
+            }
+            allocatedBytes -= retainedBytes;
+            retainedBytes = 0;
+        }
+
+        synchronized long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        synchronized long getRetainedBytes() {
+            return retainedBytes;
+        }
+
+        // Recycling the same buffer twice would hand it out twice
+        private static boolean contains(Object[] free, int count, Object buffer) {
+            for (int i = 0; i < count; i++) {
+                if (free[i] == buffer) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static long bytes(int index) {
+            return (long) classSize(index) * 4;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Bakes the effects that are otherwise drawn on top of the blurred bitmap into its pixels:
+ * a saturation color matrix and the overlay color, in that order.
+ * <p>
+ * Every effect would be a full-size fill of the BlurView on every frame, while here it's a single sweep
+ * over the downscaled pixels, which are still in the cache after the blur.
+ * <p>
+ * The noise isn't baked. It only looks right on pixels that are drawn at their own size,
+ * and the BlurView magnifies the downscaled bitmap, so it draws the noise on top at the screen resolution.
+ * <p>
+ * Works on unpremultiplied ARGB pixels, same as {@link SoftwareBlur}, and gives the same result
+ * as drawing the overlay with SRC_OVER, apart from rounding.
+ * <p>
+ * The same sweep collects the {@link ContentStatistics} of the blurred pixels, if requested.
+ * Without the saturation and the overlay, the statistics alone still cost a sweep over the pixels.
+ */
+final class PostProcessing {
+
+    private static final int SHIFT = 16;
+    private static final int ONE = 1 << SHIFT;
+    private static final int HALF = 1 << (SHIFT - 1);
+
+    // Luminance weights of the Android ColorMatrix.setSaturation
+    private static final float RED_WEIGHT = 0.213f;
+    private static final float GREEN_WEIGHT = 0.715f;
+    private static final float BLUE_WEIGHT = 0.072f;
+
+    private float saturation = 1f;
+    // Row major 3x3 saturation matrix, fixed point
+    private final int[] matrix = new int[9];
+
+    @ColorInt
+    private int overlayColor;
+
+    @Nullable
+    private ContentStatistics statistics;
+
+    void setSaturation(float saturation) {
+        this.saturation = saturation;
+        float inverse = 1f - saturation;
+        float[] weights = {RED_WEIGHT * inverse, GREEN_WEIGHT * inverse, BLUE_WEIGHT * inverse};
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                float value = weights[column] + (row == column ? saturation : 0f);
+                matrix[row * 3 + column] = Math.round(value * ONE);
+            }
+        }
+    }
+
+    void setOverlayColor(@ColorInt int overlayColor) {
+        this.overlayColor = overlayColor;
+    }
+
+    /**
+     * @param statistics receives the statistics of the pixels on every {@link #apply}, null to skip them
+     */
+    void setStatistics(@Nullable ContentStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    boolean isIdentity() {
+        return saturation == 1f && (overlayColor >>> 24) == 0 && statistics == null;
+    }
+
+    void apply(@NonNull int[] pixels, int width, int height) {
+        if (isIdentity()) {
+            return;
+        }
+        boolean saturate = saturation != 1f;
+        int overlayAlpha = overlayColor >>> 24;
+        int overlayRed = ((overlayColor >> 16) & 0xff) * overlayAlpha;
+        int overlayGreen = ((overlayColor >> 8) & 0xff) * overlayAlpha;
+        int overlayBlue = (overlayColor & 0xff) * overlayAlpha;
+        int[] m = matrix;
+        ContentStatistics statistics = this.statistics;
+        if (statistics != null) {
+            statistics.reset();
+        }
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, index = y * width; x < width; x++, index++) {
+                int pixel = pixels[index];
+                if (statistics != null) {
+                    statistics.add(pixel);
+                }
+                int a = pixel >>> 24;
+                int r = (pixel >> 16) & 0xff;
+                int g = (pixel >> 8) & 0xff;
+                int b = pixel & 0xff;
+
+                if (saturate) {
+                    int sr = (m[0] * r + m[1] * g + m[2] * b + HALF) >> SHIFT;
+                    int sg = (m[3] * r + m[4] * g + m[5] * b + HALF) >> SHIFT;
+                    int sb = (m[6] * r + m[7] * g + m[8] * b + HALF) >> SHIFT;
+                    r = clamp(sr);
+                    g = clamp(sg);
+                    b = clamp(sb);
+                }
+
+                if (overlayAlpha != 0 && a == 255) {
+                    // SRC_OVER on an opaque pixel, the common case
+                    int inverse = 255 - overlayAlpha;
+                    r = div255(overlayRed + r * inverse);
+                    g = div255(overlayGreen + g * inverse);
+                    b = div255(overlayBlue + b * inverse);
+                } else if (overlayAlpha != 0) {
+                    // SRC_OVER, in unpremultiplied colors
+                    int inverse = 255 - overlayAlpha;
+                    int destinationAlpha = a * inverse;
+                    int resultAlpha = overlayAlpha * 255 + destinationAlpha;
+                    int halfAlpha = resultAlpha >> 1;
+                    r = (overlayRed * 255 + r * destinationAlpha + halfAlpha) / resultAlpha;
+                    g = (overlayGreen * 255 + g * destinationAlpha + halfAlpha) / resultAlpha;
+                    b = (overlayBlue * 255 + b * destinationAlpha + halfAlpha) / resultAlpha;
+                    a = div255(resultAlpha);
+                }
+
+                pixels[index] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+    }
+
+    // Rounded division by 255 for values up to 255 * 255
+    private static int div255(int value) {
+        value += 128;
+        return (value + (value >> 8)) >> 8;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(value, 255);
+    }
+}
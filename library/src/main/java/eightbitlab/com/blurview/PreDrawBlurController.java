@@ -3,9 +3,15 @@ package eightbitlab.com.blurview;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
 import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.Shader;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
@@ -35,9 +41,37 @@ public final class PreDrawBlurController implements BlurController {
 
     private final BlurAlgorithm blurAlgorithm;
     private final float scaleFactor;
+    // Extra downscaling for the radii above the max radius of the algorithm
+    private int radiusDownscale = 1;
     private final boolean applyNoise;
+    // The noise tile is generated in the background, the blur is drawn without it until then
+    private final Runnable noiseReady = this::onNoiseReady;
+    // Bakes the saturation and overlay into the pixels, if the algorithm supports it.
+    // The noise is always drawn on top, at the screen resolution
+    @Nullable
+    private final PostProcessing postProcessing;
+    private float saturation = 1f;
+    @Nullable
+    private Paint saturationPaint;
+    private int gradientDirection = BlurView.GRADIENT_NONE;
+    // Created on demand, the blur algorithm can only blur with a single radius
+    @Nullable
+    private SummedAreaBlur gradientBlur;
+    // Pre-blurred levels for animating the radius, see setBlurRadiusLevels
+    @Nullable
+    private BlurLevels blurLevels;
+    @Nullable
+    private ContentStatistics.Listener statisticsListener;
+    @Nullable
+    private ContentStatistics statistics;
     private BlurViewCanvas internalCanvas;
     private Bitmap internalBitmap;
+    // Destination of the RegionBlurAlgorithm, the snapshot stays in the internalBitmap
+    @Nullable
+    private Bitmap blurredBitmap;
+    // The bitmap that holds the latest blur result
+    private Bitmap outputBitmap;
+    private final Rect visibleRegion = new Rect();
 
     @SuppressWarnings("WeakerAccess")
     final View blurView;
@@ -60,7 +94,9 @@ public final class PreDrawBlurController implements BlurController {
     };
 
     private boolean blurEnabled = true;
+    private boolean blurAutoUpdate;
     private boolean initialized;
+    private boolean destroyed;
 
     @Nullable
     private Drawable frameClearDrawable;
@@ -86,6 +122,8 @@ public final class PreDrawBlurController implements BlurController {
         this.blurAlgorithm = algorithm;
         this.scaleFactor = scaleFactor;
         this.applyNoise = applyNoise;
+        this.postProcessing = createPostProcessing(algorithm);
+        PixelBufferArena.register(blurView.getContext());
 
         int measuredWidth = blurView.getMeasuredWidth();
         int measuredHeight = blurView.getMeasuredHeight();
@@ -93,10 +131,22 @@ public final class PreDrawBlurController implements BlurController {
         init(measuredWidth, measuredHeight);
     }
 
+    @Nullable
+    private PostProcessing createPostProcessing(BlurAlgorithm algorithm) {
+        if (!(algorithm instanceof SoftwareBlur)) {
+            return null;
+        }
+        PostProcessing postProcessing = new PostProcessing();
+        postProcessing.setOverlayColor(overlayColor);
+        ((SoftwareBlur) algorithm).setPostProcessing(postProcessing);
+        return postProcessing;
+    }
+
     @SuppressWarnings("WeakerAccess")
     void init(int measuredWidth, int measuredHeight) {
         setBlurAutoUpdate(true);
-        SizeScaler sizeScaler = new SizeScaler(scaleFactor);
+        radiusDownscale = SizeScaler.radiusDownscale(getPlannedRadius(), blurAlgorithm.getMaxBlurRadius());
+        SizeScaler sizeScaler = new SizeScaler(scaleFactor * radiusDownscale, blurAlgorithm.getStrideAlignment());
         if (sizeScaler.isZeroSized(measuredWidth, measuredHeight)) {
             // Will be initialized later when the View reports a size change
             blurView.setWillNotDraw(true);
@@ -107,6 +157,9 @@ public final class PreDrawBlurController implements BlurController {
         SizeScaler.Size bitmapSize = sizeScaler.scale(measuredWidth, measuredHeight);
         internalBitmap = Bitmap.createBitmap(bitmapSize.width, bitmapSize.height, blurAlgorithm.getSupportedBitmapConfig());
         internalCanvas = new BlurViewCanvas(internalBitmap);
+        outputBitmap = internalBitmap;
+        // Allocated on the next region blur, with the new size
+        blurredBitmap = null;
         initialized = true;
         // Usually it's not needed, because `onPreDraw` updates the blur anyway.
         // But it handles cases when the PreDraw listener is attached to a different Window, for example
@@ -121,6 +174,7 @@ public final class PreDrawBlurController implements BlurController {
             return;
         }
 
+        updateOpacity();
         if (frameClearDrawable == null) {
             internalBitmap.eraseColor(Color.TRANSPARENT);
         } else {
@@ -140,6 +194,27 @@ public final class PreDrawBlurController implements BlurController {
         blurAndSave();
     }
 
+    /**
+     * An opaque frame clear drawable covers the whole snapshot, so nothing drawn on top of it can be transparent.
+     * Such a bitmap is marked as opaque, which lets the software blurs skip the alpha channel
+     * and the GPU skip blending when the blurred bitmap is drawn.
+     * <p>
+     * Only a {@link ColorDrawable} is known to be opaque from its alpha, other drawables are assumed to be translucent.
+     */
+    private void updateOpacity() {
+        if (internalBitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            // Formats without alpha, such as RGB_565, are always opaque
+            return;
+        }
+        // The progressive blur fades out the alpha
+        boolean opaque = frameClearDrawable instanceof ColorDrawable
+                && ((ColorDrawable) frameClearDrawable).getAlpha() == 255
+                && gradientDirection == BlurView.GRADIENT_NONE;
+        if (internalBitmap.hasAlpha() == opaque) {
+            internalBitmap.setHasAlpha(!opaque);
+        }
+    }
+
     /**
      * Set up matrix to draw starting from blurView's position
      */
@@ -179,15 +254,20 @@ public final class PreDrawBlurController implements BlurController {
         canvas.save();
         // Don't draw outside of the BlurView bounds if parent has clipChildren = false
         canvas.clipRect(0f, 0f, blurView.getWidth(), blurView.getHeight());
-        canvas.save();
+        // With the post processing, the saturation and the overlay are already baked into the bitmap
+        if (postProcessing == null && saturationPaint != null) {
+            saveLayer(canvas, saturationPaint);
+        } else {
+            canvas.save();
+        }
         canvas.scale(scaleFactorW, scaleFactorH);
-        blurAlgorithm.render(canvas, internalBitmap);
+        renderBlurred(canvas);
         // restore scale so we don't upscale the noise texture
         canvas.restore();
         if (applyNoise) {
-            Noise.apply(canvas, blurView.getContext(), blurView.getWidth(), blurView.getHeight());
+            Noise.apply(canvas, blurView.getWidth(), blurView.getHeight(), noiseReady);
         }
-        if (overlayColor != TRANSPARENT) {
+        if (postProcessing == null && overlayColor != TRANSPARENT) {
             canvas.drawColor(overlayColor);
         }
         // restore clip rect
@@ -195,13 +275,123 @@ public final class PreDrawBlurController implements BlurController {
         return true;
     }
 
+    private void saveLayer(Canvas canvas, Paint paint) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            canvas.saveLayer(0f, 0f, blurView.getWidth(), blurView.getHeight(), paint);
+        } else {
+            saveLayerWithFlags(canvas, blurView.getWidth(), blurView.getHeight(), paint);
+        }
+    }
+
+    // saveLayer without the flags is only available since API 21, below that the flags are the only option
+    @SuppressWarnings("deprecation")
+    private static void saveLayerWithFlags(Canvas canvas, int width, int height, Paint paint) {
+        canvas.saveLayer(0f, 0f, width, height, paint, Canvas.ALL_SAVE_FLAG);
+    }
+
+    private void renderBlurred(Canvas canvas) {
+        if (isUsingLevels() && blurLevels.isReady()) {
+            blurLevels.draw(canvas, blurRadius);
+        } else {
+            blurAlgorithm.render(canvas, outputBitmap);
+        }
+    }
+
+    private boolean isUsingLevels() {
+        return blurLevels != null && gradientDirection == BlurView.GRADIENT_NONE;
+    }
+
+    /**
+     * @return the biggest radius the snapshot has to be blurred with, in the scaled pixels
+     */
+    private float getPlannedRadius() {
+        if (blurLevels != null) {
+            return Math.max(blurRadius, blurLevels.getMaxRadius());
+        }
+        return blurRadius;
+    }
+
+    /**
+     * Allocates the snapshot again if the radius needs a different extra downscaling
+     *
+     * @return true if the snapshot was allocated and blurred again
+     */
+    private boolean updateRadiusDownscale() {
+        if (initialized
+                && SizeScaler.radiusDownscale(getPlannedRadius(), blurAlgorithm.getMaxBlurRadius()) != radiusDownscale) {
+            updateBlurViewSize();
+            return true;
+        }
+        return false;
+    }
+
     private void blurAndSave() {
-        internalBitmap = blurAlgorithm.blur(internalBitmap, blurRadius);
-        if (!blurAlgorithm.canModifyBitmap()) {
-            internalCanvas.setBitmap(internalBitmap);
+        Bitmap blurred = internalBitmap;
+        float radius = SizeScaler.downscaleRadius(blurRadius, radiusDownscale);
+        if (gradientBlur != null && gradientDirection != BlurView.GRADIENT_NONE) {
+            // Blurs in place
+            gradientBlur.blur(internalBitmap, radius);
+            outputBitmap = internalBitmap;
+        } else if (isUsingLevels()) {
+            // The snapshot stays sharp, only the levels are blurred
+            if (!blurLevels.update(internalBitmap, blurAlgorithm, radiusDownscale)) {
+                // Same content as before, the levels and the statistics are still valid
+                return;
+            }
+            blurred = blurLevels.getTopLevel();
+        } else if (blurAlgorithm instanceof RegionBlurAlgorithm) {
+            blurred = blurRegion((RegionBlurAlgorithm) blurAlgorithm, radius);
+        } else {
+            internalBitmap = blurAlgorithm.blur(internalBitmap, radius);
+            if (!blurAlgorithm.canModifyBitmap()) {
+                internalCanvas.setBitmap(internalBitmap);
+            }
+            blurred = internalBitmap;
+            outputBitmap = internalBitmap;
+        }
+        if (statisticsListener != null && statistics != null) {
+            if (postProcessing == null) {
+                statistics.collect(blurred);
+            }
+            statisticsListener.onContentStatistics(statistics);
         }
     }
 
+    /**
+     * Blurs the visible part of the snapshot into a separate bitmap
+     */
+    private Bitmap blurRegion(RegionBlurAlgorithm algorithm, float radius) {
+        if (blurredBitmap == null) {
+            blurredBitmap = Bitmap.createBitmap(internalBitmap.getWidth(), internalBitmap.getHeight(), internalBitmap.getConfig());
+        }
+        if (blurredBitmap.hasAlpha() != internalBitmap.hasAlpha()) {
+            blurredBitmap.setHasAlpha(internalBitmap.hasAlpha());
+        }
+        outputBitmap = blurredBitmap;
+        if (updateVisibleRegion()) {
+            algorithm.blur(internalBitmap, blurredBitmap, visibleRegion, radius);
+        }
+        return blurredBitmap;
+    }
+
+    /**
+     * @return false if no part of the BlurView is visible
+     */
+    private boolean updateVisibleRegion() {
+        if (!blurView.getLocalVisibleRect(visibleRegion)) {
+            return false;
+        }
+        float scaleX = (float) internalBitmap.getWidth() / blurView.getWidth();
+        float scaleY = (float) internalBitmap.getHeight() / blurView.getHeight();
+        visibleRegion.set(
+                Math.max((int) Math.floor(visibleRegion.left * scaleX), 0),
+                Math.max((int) Math.floor(visibleRegion.top * scaleY), 0),
+                Math.min((int) Math.ceil(visibleRegion.right * scaleX), internalBitmap.getWidth()),
+                Math.min((int) Math.ceil(visibleRegion.bottom * scaleY), internalBitmap.getHeight())
+        );
+        return !visibleRegion.isEmpty();
+    }
+
     @Override
     public void updateBlurViewSize() {
         int measuredWidth = blurView.getMeasuredWidth();
@@ -214,12 +404,27 @@ public final class PreDrawBlurController implements BlurController {
     public void destroy() {
         setBlurAutoUpdate(false);
         blurAlgorithm.destroy();
+        if (gradientBlur != null) {
+            gradientBlur.destroy();
+        }
+        if (blurLevels != null) {
+            blurLevels.destroy();
+        }
+        blurredBitmap = null;
+        if (!destroyed) {
+            destroyed = true;
+            PixelBufferArena.unregister(blurView.getContext());
+        }
         initialized = false;
     }
 
     @Override
     public BlurViewFacade setBlurRadius(float radius) {
         this.blurRadius = radius;
+        // With the levels, only the cross-fade changes and there's no need to blur again
+        if (updateRadiusDownscale() || isUsingLevels()) {
+            blurView.invalidate();
+        }
         return this;
     }
 
@@ -238,6 +443,7 @@ public final class PreDrawBlurController implements BlurController {
     }
 
     public BlurViewFacade setBlurAutoUpdate(final boolean enabled) {
+        blurAutoUpdate = enabled;
         rootView.getViewTreeObserver().removeOnPreDrawListener(drawListener);
         blurView.getViewTreeObserver().removeOnPreDrawListener(drawListener);
         if (enabled) {
@@ -252,13 +458,105 @@ public final class PreDrawBlurController implements BlurController {
 
     @Override
     public BlurViewFacade setBlurGradient(int direction) {
+        if (this.gradientDirection != direction) {
+            this.gradientDirection = direction;
+            if (gradientBlur == null && direction != BlurView.GRADIENT_NONE) {
+                gradientBlur = new SummedAreaBlur();
+                gradientBlur.setPostProcessing(postProcessing);
+            }
+            if (gradientBlur != null) {
+                gradientBlur.setGradientDirection(direction);
+            }
+            updateBlur();
+            blurView.invalidate();
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurRadiusLevels(int levelCount, float maxRadius) {
+        if (blurLevels != null) {
+            if (blurLevels.getLevelCount() == levelCount && blurLevels.getMaxRadius() == maxRadius) {
+                return this;
+            }
+            blurLevels.destroy();
+            blurLevels = null;
+        }
+        if (levelCount > 0) {
+            if (!blurAlgorithm.canModifyBitmap()) {
+                Log.w("BlurView", "Blur radius levels need an algorithm that blurs in place, ignoring");
+                return this;
+            }
+            blurLevels = new BlurLevels(levelCount, maxRadius);
+        }
+        if (!updateRadiusDownscale()) {
+            updateBlur();
+        }
+        blurView.invalidate();
         return this;
     }
 
+    private void onNoiseReady() {
+        if (destroyed) {
+            return;
+        }
+        blurView.invalidate();
+    }
+
+    /**
+     * Blurs the snapshot again after a change of the effects baked into the blurred pixels.
+     * With the auto update, the next onPreDraw does it, so animating the effects costs a single blur per frame.
+     */
+    private void updateBakedEffects() {
+        if (blurLevels != null) {
+            blurLevels.invalidate();
+        }
+        if (!blurAutoUpdate) {
+            updateBlur();
+        }
+    }
+
     @Override
     public BlurViewFacade setOverlayColor(int overlayColor) {
         if (this.overlayColor != overlayColor) {
             this.overlayColor = overlayColor;
+            if (postProcessing != null) {
+                postProcessing.setOverlayColor(overlayColor);
+                updateBakedEffects();
+            }
+            blurView.invalidate();
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setContentStatisticsListener(@Nullable ContentStatistics.Listener listener) {
+        this.statisticsListener = listener;
+        if (listener != null && statistics == null) {
+            statistics = new ContentStatistics();
+        }
+        if (postProcessing != null) {
+            // Collected in the post processing sweep, which runs for the statistics alone if needed
+            postProcessing.setStatistics(listener == null ? null : statistics);
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setSaturation(float saturation) {
+        if (this.saturation != saturation) {
+            this.saturation = saturation;
+            if (postProcessing != null) {
+                postProcessing.setSaturation(saturation);
+                updateBakedEffects();
+            } else if (saturation == 1f) {
+                saturationPaint = null;
+            } else {
+                ColorMatrix matrix = new ColorMatrix();
+                matrix.setSaturation(saturation);
+                saturationPaint = new Paint();
+                saturationPaint.setColorFilter(new ColorMatrixColorFilter(matrix));
+            }
             blurView.invalidate();
         }
         return this;
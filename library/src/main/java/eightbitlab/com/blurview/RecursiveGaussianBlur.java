@@ -0,0 +1,310 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Recursive (IIR) approximation of the Gaussian blur by Young and van Vliet,
+ * "Recursive implementation of the Gaussian filter", Signal Processing 44 (1995).
+ * <p>
+ * Every row and column is filtered with a third order causal pass followed by an anti-causal pass.
+ * The amount of work per pixel doesn't depend on sigma, which makes it a good fit for very large radii.
+ * The edges are extended, same as in the other blur algorithms. The anti-causal pass starts from
+ * the state the filter would reach on the extended edge (Triggs and Sdika, "Boundary conditions
+ * for Young-van Vliet recursive filtering", IEEE TSP 54 (2006)), so there are no artifacts near the edges.
+ * <p>
+ * The sigma is the same as the one RenderScript uses for a given radius.
+ */
+public class RecursiveGaussianBlur extends SeparableBlur {
+
+    /**
+     * Filters in float. Loses precision for sigmas above ~50 (radius ~125).
+     */
+    public static final int PRECISION_FLOAT = 0;
+    /**
+     * Filters in 64 bit fixed point, with 16 fractional bits for the pixels and 32 for the coefficients.
+     * Doesn't touch the FPU in the inner loop, keeps a solid color exactly the same
+     * and stays accurate for any sigma. Used by default.
+     */
+    public static final int PRECISION_FIXED_POINT = 1;
+
+    // The formulas for q are only valid above that
+    private static final float MIN_SIGMA = 0.5f;
+    private static final int PIXEL_SHIFT = 16;
+    private static final int COEFFICIENT_SHIFT = 32;
+    private static final long COEFFICIENT_HALF = 1L << (COEFFICIENT_SHIFT - 1);
+
+    private final int precision;
+
+    private float lastBlurRadius = -1f;
+    // Coefficients normalized by b0, so b + b1 + b2 + b3 == 1
+    private float b, b1, b2, b3;
+    private long fixedB, fixedB1, fixedB2, fixedB3;
+    // Maps the last 3 causal outputs to the initial anti-causal state, relative to the edge value
+    private final float[] edge = new float[9];
+    private final long[] fixedEdge = new long[9];
+    private double[] edgeResponse = new double[0];
+
+    private float[] floatLine = new float[0];
+    private long[] fixedLine = new long[0];
+
+    public RecursiveGaussianBlur() {
+        this(PRECISION_FIXED_POINT);
+    }
+
+    /**
+     * @param precision {@link #PRECISION_FLOAT} or {@link #PRECISION_FIXED_POINT}
+     */
+    public RecursiveGaussianBlur(int precision) {
+        if (precision != PRECISION_FLOAT && precision != PRECISION_FIXED_POINT) {
+            throw new IllegalArgumentException("Unknown precision " + precision);
+        }
+        this.precision = precision;
+    }
+
+    @Override
+    void blurRows(@NonNull int[] pixels, int width, int height, float blurRadius, int fromRow, int toRow) {
+        if (!prepare(blurRadius, width)) {
+            return;
+        }
+        for (int y = fromRow; y < toRow; y++) {
+            blurLine(pixels, y * width, 1, width);
+        }
+    }
+
+    @Override
+    void blurColumns(@NonNull int[] pixels, int width, int height, float blurRadius, int fromColumn, int toColumn) {
+        if (!prepare(blurRadius, height)) {
+            return;
+        }
+        for (int x = fromColumn; x < toColumn; x++) {
+            blurLine(pixels, x, width, height);
+        }
+    }
+
+    /**
+     * @return false if there's nothing to blur
+     */
+    private boolean prepare(float blurRadius, int lineLength) {
+        if (blurRadius <= 0f) {
+            return false;
+        }
+        if (blurRadius != lastBlurRadius) {
+            computeCoefficients(Math.max(radiusToSigma(blurRadius), MIN_SIGMA));
+            lastBlurRadius = blurRadius;
+        }
+        int size = lineLength * 4;
+        if (precision == PRECISION_FLOAT && floatLine.length < size) {
+            floatLine = new float[size];
+        } else if (precision == PRECISION_FIXED_POINT && fixedLine.length < size) {
+            fixedLine = new long[size];
+        }
+        return true;
+    }
+
+    private void computeCoefficients(float sigma) {
+        double q;
+        if (sigma >= 2.5f) {
+            q = 0.98711 * sigma - 0.96330;
+        } else {
+            q = 3.97156 - 4.14554 * Math.sqrt(1 - 0.26891 * sigma);
+        }
+        double q2 = q * q;
+        double q3 = q2 * q;
+        double b0 = 1.57825 + 2.44413 * q + 1.4281 * q2 + 0.422205 * q3;
+        double nb1 = (2.44413 * q + 2.85619 * q2 + 1.26661 * q3) / b0;
+        double nb2 = -(1.4281 * q2 + 1.26661 * q3) / b0;
+        double nb3 = 0.422205 * q3 / b0;
+
+        b1 = (float) nb1;
+        b2 = (float) nb2;
+        b3 = (float) nb3;
+        b = 1f - b1 - b2 - b3;
+
+        fixedB1 = Math.round(nb1 * (1L << COEFFICIENT_SHIFT));
+        fixedB2 = Math.round(nb2 * (1L << COEFFICIENT_SHIFT));
+        fixedB3 = Math.round(nb3 * (1L << COEFFICIENT_SHIFT));
+        // Unit gain for a solid color, regardless of the rounding above
+        fixedB = (1L << COEFFICIENT_SHIFT) - fixedB1 - fixedB2 - fixedB3;
+
+        computeEdgeMatrix(sigma, 1 - nb1 - nb2 - nb3, nb1, nb2, nb3);
+    }
+
+    /**
+     * Finds the initial anti-causal state numerically, by running the filters past the edge
+     * for a unit deviation of each of the last 3 causal outputs. The response decays exponentially,
+     * so a few sigmas are enough.
+     */
+    private void computeEdgeMatrix(float sigma, double nb, double nb1, double nb2, double nb3) {
+        int length = (int) Math.ceil(sigma * 10) + 50;
+        if (edgeResponse.length < length) {
+            edgeResponse = new double[length];
+        }
+        double[] response = edgeResponse;
+        for (int column = 0; column < 3; column++) {
+            // Causal outputs past the edge, with the input equal to the edge value (zero deviation)
+            double w1 = column == 0 ? 1 : 0, w2 = column == 1 ? 1 : 0, w3 = column == 2 ? 1 : 0;
+            for (int i = 0; i < length; i++) {
+                double w = nb1 * w1 + nb2 * w2 + nb3 * w3;
+                response[i] = w;
+                w3 = w2;
+                w2 = w1;
+                w1 = w;
+            }
+            double y1 = 0, y2 = 0, y3 = 0;
+            for (int i = length - 1; i >= 0; i--) {
+                double y = nb * response[i] + nb1 * y1 + nb2 * y2 + nb3 * y3;
+                y3 = y2;
+                y2 = y1;
+                y1 = y;
+                if (i < 3) {
+                    edge[i * 3 + column] = (float) y;
+                    fixedEdge[i * 3 + column] = Math.round(y * (1L << COEFFICIENT_SHIFT));
+                }
+            }
+        }
+    }
+
+    private void blurLine(int[] pixels, int offset, int step, int count) {
+        if (precision == PRECISION_FLOAT) {
+            blurLineFloat(pixels, offset, step, count);
+        } else {
+            blurLineFixed(pixels, offset, step, count);
+        }
+    }
+
+    private void blurLineFloat(int[] pixels, int offset, int step, int count) {
+        float[] line = floatLine;
+        float b = this.b, b1 = this.b1, b2 = this.b2, b3 = this.b3;
+
+        // Causal pass, starting in the steady state of the extended edge
+        int pixel = pixels[offset];
+        float a1 = pixel >>> 24, r1 = (pixel >> 16) & 0xff, g1 = (pixel >> 8) & 0xff, bl1 = pixel & 0xff;
+        float a2 = a1, r2 = r1, g2 = g1, bl2 = bl1;
+        float a3 = a1, r3 = r1, g3 = g1, bl3 = bl1;
+        int position = offset;
+        for (int i = 0, j = 0; i < count; i++, j += 4, position += step) {
+            pixel = pixels[position];
+            float a = b * (pixel >>> 24) + b1 * a1 + b2 * a2 + b3 * a3;
+            float r = b * ((pixel >> 16) & 0xff) + b1 * r1 + b2 * r2 + b3 * r3;
+            float g = b * ((pixel >> 8) & 0xff) + b1 * g1 + b2 * g2 + b3 * g3;
+            float bl = b * (pixel & 0xff) + b1 * bl1 + b2 * bl2 + b3 * bl3;
+            line[j] = a;
+            line[j + 1] = r;
+            line[j + 2] = g;
+            line[j + 3] = bl;
+            a3 = a2; a2 = a1; a1 = a;
+            r3 = r2; r2 = r1; r1 = r;
+            g3 = g2; g2 = g1; g1 = g;
+            bl3 = bl2; bl2 = bl1; bl1 = bl;
+        }
+
+        // Anti-causal pass, writing the result back
+        position = offset + (count - 1) * step;
+        pixel = pixels[position];
+        float[] m = edge;
+        float da1 = a1 - (pixel >>> 24), da2 = a2 - (pixel >>> 24), da3 = a3 - (pixel >>> 24);
+        float dr1 = r1 - ((pixel >> 16) & 0xff), dr2 = r2 - ((pixel >> 16) & 0xff), dr3 = r3 - ((pixel >> 16) & 0xff);
+        float dg1 = g1 - ((pixel >> 8) & 0xff), dg2 = g2 - ((pixel >> 8) & 0xff), dg3 = g3 - ((pixel >> 8) & 0xff);
+        float db1 = bl1 - (pixel & 0xff), db2 = bl2 - (pixel & 0xff), db3 = bl3 - (pixel & 0xff);
+        a1 = (pixel >>> 24) + m[0] * da1 + m[1] * da2 + m[2] * da3;
+        a2 = (pixel >>> 24) + m[3] * da1 + m[4] * da2 + m[5] * da3;
+        a3 = (pixel >>> 24) + m[6] * da1 + m[7] * da2 + m[8] * da3;
+        r1 = ((pixel >> 16) & 0xff) + m[0] * dr1 + m[1] * dr2 + m[2] * dr3;
+        r2 = ((pixel >> 16) & 0xff) + m[3] * dr1 + m[4] * dr2 + m[5] * dr3;
+        r3 = ((pixel >> 16) & 0xff) + m[6] * dr1 + m[7] * dr2 + m[8] * dr3;
+        g1 = ((pixel >> 8) & 0xff) + m[0] * dg1 + m[1] * dg2 + m[2] * dg3;
+        g2 = ((pixel >> 8) & 0xff) + m[3] * dg1 + m[4] * dg2 + m[5] * dg3;
+        g3 = ((pixel >> 8) & 0xff) + m[6] * dg1 + m[7] * dg2 + m[8] * dg3;
+        bl1 = (pixel & 0xff) + m[0] * db1 + m[1] * db2 + m[2] * db3;
+        bl2 = (pixel & 0xff) + m[3] * db1 + m[4] * db2 + m[5] * db3;
+        bl3 = (pixel & 0xff) + m[6] * db1 + m[7] * db2 + m[8] * db3;
+        for (int j = (count - 1) * 4; j >= 0; j -= 4, position -= step) {
+            float a = b * line[j] + b1 * a1 + b2 * a2 + b3 * a3;
+            float r = b * line[j + 1] + b1 * r1 + b2 * r2 + b3 * r3;
+            float g = b * line[j + 2] + b1 * g1 + b2 * g2 + b3 * g3;
+            float bl = b * line[j + 3] + b1 * bl1 + b2 * bl2 + b3 * bl3;
+            pixels[position] = clamp(a + 0.5f) << 24 | clamp(r + 0.5f) << 16 | clamp(g + 0.5f) << 8 | clamp(bl + 0.5f);
+            a3 = a2; a2 = a1; a1 = a;
+            r3 = r2; r2 = r1; r1 = r;
+            g3 = g2; g2 = g1; g1 = g;
+            bl3 = bl2; bl2 = bl1; bl1 = bl;
+        }
+    }
+
+    private void blurLineFixed(int[] pixels, int offset, int step, int count) {
+        long[] line = fixedLine;
+        long b = fixedB, b1 = fixedB1, b2 = fixedB2, b3 = fixedB3;
+
+        int pixel = pixels[offset];
+        long a1 = (long) (pixel >>> 24) << PIXEL_SHIFT;
+        long r1 = (long) ((pixel >> 16) & 0xff) << PIXEL_SHIFT;
+        long g1 = (long) ((pixel >> 8) & 0xff) << PIXEL_SHIFT;
+        long bl1 = (long) (pixel & 0xff) << PIXEL_SHIFT;
+        long a2 = a1, r2 = r1, g2 = g1, bl2 = bl1;
+        long a3 = a1, r3 = r1, g3 = g1, bl3 = bl1;
+        int position = offset;
+        for (int i = 0, j = 0; i < count; i++, j += 4, position += step) {
+            pixel = pixels[position];
+            long a = (b * ((long) (pixel >>> 24) << PIXEL_SHIFT) + b1 * a1 + b2 * a2 + b3 * a3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT;
+            long r = (b * ((long) ((pixel >> 16) & 0xff) << PIXEL_SHIFT) + b1 * r1 + b2 * r2 + b3 * r3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT;
+            long g = (b * ((long) ((pixel >> 8) & 0xff) << PIXEL_SHIFT) + b1 * g1 + b2 * g2 + b3 * g3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT;
+            long bl = (b * ((long) (pixel & 0xff) << PIXEL_SHIFT) + b1 * bl1 + b2 * bl2 + b3 * bl3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT;
+            line[j] = a;
+            line[j + 1] = r;
+            line[j + 2] = g;
+            line[j + 3] = bl;
+            a3 = a2; a2 = a1; a1 = a;
+            r3 = r2; r2 = r1; r1 = r;
+            g3 = g2; g2 = g1; g1 = g;
+            bl3 = bl2; bl2 = bl1; bl1 = bl;
+        }
+
+        position = offset + (count - 1) * step;
+        pixel = pixels[position];
+        long[] m = fixedEdge;
+        long ea = (long) (pixel >>> 24) << PIXEL_SHIFT;
+        long er = (long) ((pixel >> 16) & 0xff) << PIXEL_SHIFT;
+        long eg = (long) ((pixel >> 8) & 0xff) << PIXEL_SHIFT;
+        long eb = (long) (pixel & 0xff) << PIXEL_SHIFT;
+        long da1 = a1 - ea, da2 = a2 - ea, da3 = a3 - ea;
+        long dr1 = r1 - er, dr2 = r2 - er, dr3 = r3 - er;
+        long dg1 = g1 - eg, dg2 = g2 - eg, dg3 = g3 - eg;
+        long db1 = bl1 - eb, db2 = bl2 - eb, db3 = bl3 - eb;
+        a1 = ea + ((m[0] * da1 + m[1] * da2 + m[2] * da3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        a2 = ea + ((m[3] * da1 + m[4] * da2 + m[5] * da3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        a3 = ea + ((m[6] * da1 + m[7] * da2 + m[8] * da3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        r1 = er + ((m[0] * dr1 + m[1] * dr2 + m[2] * dr3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        r2 = er + ((m[3] * dr1 + m[4] * dr2 + m[5] * dr3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        r3 = er + ((m[6] * dr1 + m[7] * dr2 + m[8] * dr3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        g1 = eg + ((m[0] * dg1 + m[1] * dg2 + m[2] * dg3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        g2 = eg + ((m[3] * dg1 + m[4] * dg2 + m[5] * dg3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        g3 = eg + ((m[6] * dg1 + m[7] * dg2 + m[8] * dg3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        bl1 = eb + ((m[0] * db1 + m[1] * db2 + m[2] * db3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        bl2 = eb + ((m[3] * db1 + m[4] * db2 + m[5] * db3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        bl3 = eb + ((m[6] * db1 + m[7] * db2 + m[8] * db3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT);
+        long half = 1L << (PIXEL_SHIFT - 1);
+        for (int j = (count - 1) * 4; j >= 0; j -= 4, position -= step) {
+            long a = (b * line[j] + b1 * a1 + b2 * a2 + b3 * a3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT;
+            long r = (b * line[j + 1] + b1 * r1 + b2 * r2 + b3 * r3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT;
+            long g = (b * line[j + 2] + b1 * g1 + b2 * g2 + b3 * g3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT;
+            long bl = (b * line[j + 3] + b1 * bl1 + b2 * bl2 + b3 * bl3 + COEFFICIENT_HALF) >> COEFFICIENT_SHIFT;
+            pixels[position] = clamp((a + half) >> PIXEL_SHIFT) << 24
+                    | clamp((r + half) >> PIXEL_SHIFT) << 16
+                    | clamp((g + half) >> PIXEL_SHIFT) << 8
+                    | clamp((bl + half) >> PIXEL_SHIFT);
+            a3 = a2; a2 = a1; a1 = a;
+            r3 = r2; r2 = r1; r1 = r;
+            g3 = g2; g2 = g1; g1 = g;
+            bl3 = bl2; bl2 = bl1; bl1 = bl;
+        }
+    }
+
+    // The filter can slightly overshoot on sharp edges
+    private static int clamp(float value) {
+        return value <= 0f ? 0 : value >= 255f ? 255 : (int) value;
+    }
+
+    private static int clamp(long value) {
+        return value <= 0 ? 0 : value >= 255 ? 255 : (int) value;
+    }
+}
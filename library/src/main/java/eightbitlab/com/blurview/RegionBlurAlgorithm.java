@@ -0,0 +1,28 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+/**
+ * {@link BlurAlgorithm} that blurs out of place and only a region of the bitmap.
+ * <p>
+ * Writing into a separate destination keeps the snapshot intact,
+ * and the region lets the controller skip the part of the BlurView that isn't visible.
+ * The controller uses it when the algorithm implements it, and {@link #blur(Bitmap, float)} otherwise.
+ */
+public interface RegionBlurAlgorithm extends BlurAlgorithm {
+
+    /**
+     * Blurs the region of the source into the same region of the destination.
+     * The pixels around the region are read from the source too, so the region looks the same
+     * as when the whole bitmap is blurred. The destination outside of the region is left as is.
+     *
+     * @param source      the bitmap to blur, not modified
+     * @param destination receives the blurred pixels, same size and config as the source
+     * @param region      the part of the bitmap to blur, within the bitmap bounds
+     * @param blurRadius  blur radius
+     */
+    void blur(@NonNull Bitmap source, @NonNull Bitmap destination, @NonNull Rect region, float blurRadius);
+}
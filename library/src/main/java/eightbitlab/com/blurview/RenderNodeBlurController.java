@@ -1,10 +1,16 @@
 package eightbitlab.com.blurview;
 
 import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.BlendMode;
+import android.graphics.BlendModeColorFilter;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
 import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.RecordingCanvas;
 import android.graphics.RenderEffect;
 import android.graphics.RenderNode;
@@ -34,16 +40,40 @@ public class RenderNodeBlurController implements BlurController {
     private Drawable frameClearDrawable;
     private int overlayColor;
     private float blurRadius = 1f;
+    private float saturation = 1f;
+    @Nullable
+    private ContentStatistics.Listener statisticsListener;
+    @Nullable
+    private ContentStatistics statistics;
     private boolean enabled = true;
     private int gradientDirection = BlurView.GRADIENT_NONE;
 
     private final GradientCache gradientCache = new GradientCache();
+    // The whole effect chain of the node. It's only rebuilt when one of its inputs changes, not on every frame
+    @Nullable
+    private RenderEffect blurEffect;
+    // The BlurView bounds in the target the gradient of the blurEffect was built for
+    private int effectLeft;
+    private int effectTop;
+    private int effectWidth;
+    private int effectHeight;
+    // The noise texture doesn't change, so the shader is created once it's generated.
+    // It's anchored to the BlurView with its local matrix, the effect follows the BlurView position.
+    @Nullable
+    private BitmapShader noiseShader;
+    private final Matrix noiseMatrix = new Matrix();
+    private final Runnable noiseReady = this::onNoiseReady;
 
     // Potentially cached stuff from the slow software path
     @Nullable
     private Bitmap cachedBitmap;
     @Nullable
     private RenderScriptBlur fallbackBlur;
+    // Both are null when the saturation is 1, the filter is shared with the RenderEffect chain
+    @Nullable
+    private ColorMatrixColorFilter saturationFilter;
+    @Nullable
+    private Paint saturationPaint;
 
     // This tracks BlurView location in scrollable containers, during animations, etc.
     private final ViewTreeObserver.OnPreDrawListener drawListener = () -> {
@@ -60,6 +90,7 @@ public class RenderNodeBlurController implements BlurController {
         this.applyNoise = applyNoise;
         blurView.setWillNotDraw(false);
         blurView.getViewTreeObserver().addOnPreDrawListener(drawListener);
+        applyBlur();
     }
 
     @Override
@@ -96,14 +127,8 @@ public class RenderNodeBlurController implements BlurController {
         canvas.save();
         // Don't draw outside of the BlurView bounds if parent has clipChildren = false
         canvas.clipRect(0f, 0f, blurView.getWidth(), blurView.getHeight());
-        // Draw on the system canvas
+        // Draw on the system canvas. The noise and the overlay are a part of the node's RenderEffect
         canvas.drawRenderNode(blurNode);
-        if (applyNoise) {
-            Noise.apply(canvas, blurView.getContext(), blurView.getWidth(), blurView.getHeight());
-        }
-        if (overlayColor != Color.TRANSPARENT) {
-            canvas.drawColor(overlayColor);
-        }
         canvas.restore();
     }
 
@@ -117,26 +142,39 @@ public class RenderNodeBlurController implements BlurController {
         blurNode.setTranslationX(layoutTranslationX);
         blurNode.setTranslationY(layoutTranslationY);
 
-        if (Build.VERSION.SDK_INT == Build.VERSION_CODES.S) {
+        if (isEffectOutdated()) {
+            // The gradient and the noise are in the target coordinates, so they have to follow the BlurView
+            applyBlur();
+        } else if (Build.VERSION.SDK_INT == Build.VERSION_CODES.S) {
             // There's a bug on API 31 - blurNode doesn't get re-rendered on setting new translation/scale/rotation,
             // so we need to re-apply the blur effect to trigger a redraw.
-            applyBlur();
+            // Setting the same effect again is a no-op, so it's cleared first instead of building a new chain
+            blurNode.setRenderEffect(null);
+            blurNode.setRenderEffect(blurEffect);
         }
     }
 
+    private boolean isEffectOutdated() {
+        return (gradientDirection != BlurView.GRADIENT_NONE || noiseShader != null)
+                && (effectLeft != getLeft() || effectTop != getTop()
+                || effectWidth != blurView.getWidth() || effectHeight != blurView.getHeight());
+    }
+
     private void drawSnapshot() {
         RecordingCanvas recordingCanvas = blurNode.beginRecording();
         if (frameClearDrawable != null) {
             frameClearDrawable.draw(recordingCanvas);
         }
         recordingCanvas.drawRenderNode(target.renderNode);
-        // Looks like the order of this doesn't matter
-        applyBlur();
+        // The RenderEffect is a property of the node and outlives the recording, see applyBlur
         blurNode.endRecording();
     }
 
     private void softwarePath(Canvas canvas) {
-        SizeScaler sizeScaler = new SizeScaler(scaleFactor);
+        if (fallbackBlur == null) {
+            fallbackBlur = new RenderScriptBlur(blurView.getContext());
+        }
+        SizeScaler sizeScaler = new SizeScaler(scaleFactor, fallbackBlur.getStrideAlignment());
         Size original = new Size(blurView.getWidth(), blurView.getHeight());
         Size scaled = sizeScaler.scale(original);
         if (cachedBitmap == null || cachedBitmap.getWidth() != scaled.width || cachedBitmap.getHeight() != scaled.height) {
@@ -157,16 +195,21 @@ public class RenderNodeBlurController implements BlurController {
         }
         softwareCanvas.restore();
 
-        if (fallbackBlur == null) {
-            fallbackBlur = new RenderScriptBlur(blurView.getContext());
-        }
         fallbackBlur.blur(cachedBitmap, blurRadius);
-        canvas.save();
+        if (statisticsListener != null && statistics != null) {
+            statistics.collect(cachedBitmap);
+            statisticsListener.onContentStatistics(statistics);
+        }
+        if (saturationPaint != null) {
+            canvas.saveLayer(null, saturationPaint);
+        } else {
+            canvas.save();
+        }
         canvas.scale((float) original.width / scaled.width, (float) original.height / scaled.height);
         fallbackBlur.render(canvas, cachedBitmap);
         canvas.restore();
         if (applyNoise) {
-            Noise.apply(canvas, blurView.getContext(), blurView.getWidth(), blurView.getHeight());
+            Noise.apply(canvas, blurView.getWidth(), blurView.getHeight(), noiseReady);
         }
         if (overlayColor != Color.TRANSPARENT) {
             canvas.drawColor(overlayColor);
@@ -239,25 +282,73 @@ public class RenderNodeBlurController implements BlurController {
         return this;
     }
 
+    /**
+     * Builds the effect chain of the node. Only called when one of the inputs changes:
+     * the radius, saturation, gradient, overlay, the noise tile or the BlurView bounds for the gradient and the noise.
+     */
     private void applyBlur() {
         // scaleFactor is only used to increase the blur radius
         // because RenderEffect already scales down the snapshot when needed.
         float realBlurRadius = blurRadius * scaleFactor;
         RenderEffect blur = RenderEffect.createBlurEffect(realBlurRadius, realBlurRadius, Shader.TileMode.CLAMP);
+        if (saturationFilter != null) {
+            blur = RenderEffect.createColorFilterEffect(saturationFilter, blur);
+        }
 
-        if (gradientDirection != BlurView.GRADIENT_NONE && blurView.getWidth() > 0 && blurView.getHeight() > 0) {
-            int w = blurView.getWidth();
-            int h = blurView.getHeight();
-            Shader gradient = gradientCache.getShader(w, h, getLeft(), getTop(), gradientDirection);
+        effectLeft = getLeft();
+        effectTop = getTop();
+        effectWidth = blurView.getWidth();
+        effectHeight = blurView.getHeight();
+        if (gradientDirection != BlurView.GRADIENT_NONE && effectWidth > 0 && effectHeight > 0) {
+            Shader gradient = gradientCache.getShader(effectWidth, effectHeight, effectLeft, effectTop, gradientDirection);
             if (gradient != null) {
                 RenderEffect mask = RenderEffect.createShaderEffect(gradient);
                 blur = RenderEffect.createBlendModeEffect(blur, mask, BlendMode.DST_IN);
             }
         }
 
+        // Same order as on the software path: the noise over the blurred content, then the overlay over everything
+        RenderEffect noise = applyNoise ? getNoiseEffect() : null;
+        if (noise != null) {
+            blur = RenderEffect.createBlendModeEffect(blur, noise, BlendMode.SRC_ATOP);
+        }
+        if (overlayColor != Color.TRANSPARENT) {
+            blur = RenderEffect.createColorFilterEffect(new BlendModeColorFilter(overlayColor, BlendMode.SRC_OVER), blur);
+        }
+
+        blurEffect = blur;
         blurNode.setRenderEffect(blur);
     }
 
+    private void onNoiseReady() {
+        applyBlur();
+        blurView.invalidate();
+    }
+
+    /**
+     * @return null until the noise tile is generated, the blur is applied again then
+     */
+    @Nullable
+    private RenderEffect getNoiseEffect() {
+        if (noiseShader == null) {
+            Noise.Tile tile = Noise.getTile(noiseReady);
+            if (tile == null) {
+                return null;
+            }
+            noiseShader = new BitmapShader(tile.getBitmap(), Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
+        }
+        // The node is in the target coordinates, the grain starts at the BlurView origin like on the software path
+        noiseMatrix.setTranslate(effectLeft, effectTop);
+        noiseShader.setLocalMatrix(noiseMatrix);
+        return RenderEffect.createShaderEffect(noiseShader);
+    }
+
+    private ColorMatrix saturationMatrix() {
+        ColorMatrix matrix = new ColorMatrix();
+        matrix.setSaturation(saturation);
+        return matrix;
+    }
+
     private static class GradientCache {
         @Nullable
         private Shader shader;
@@ -350,10 +441,45 @@ public class RenderNodeBlurController implements BlurController {
         return this;
     }
 
+    @Override
+    public BlurViewFacade setBlurRadiusLevels(int levelCount, float maxRadius) {
+        // RenderEffect blurs on the GPU on every frame, changing the radius is already cheap
+        return this;
+    }
+
     @Override
     public BlurViewFacade setOverlayColor(int overlayColor) {
         if (this.overlayColor != overlayColor) {
             this.overlayColor = overlayColor;
+            applyBlur();
+            blurView.invalidate();
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setContentStatisticsListener(@Nullable ContentStatistics.Listener listener) {
+        // Only the software fallback has the pixels on the CPU
+        this.statisticsListener = listener;
+        if (listener != null && statistics == null) {
+            statistics = new ContentStatistics();
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setSaturation(float saturation) {
+        if (this.saturation != saturation) {
+            this.saturation = saturation;
+            if (saturation == 1f) {
+                saturationFilter = null;
+                saturationPaint = null;
+            } else {
+                saturationFilter = new ColorMatrixColorFilter(saturationMatrix());
+                saturationPaint = new Paint();
+                saturationPaint.setColorFilter(saturationFilter);
+            }
+            applyBlur();
             blurView.invalidate();
         }
         return this;
@@ -5,14 +5,19 @@ import static java.lang.Math.min;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build;
 import android.renderscript.Allocation;
 import android.renderscript.Element;
 import android.renderscript.RenderScript;
+import android.renderscript.Script;
 import android.renderscript.ScriptIntrinsicBlur;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 /**
  * Blur using RenderScript, processed on GPU when device drivers support it.
@@ -22,11 +27,22 @@ import androidx.annotation.NonNull;
  * On API 31+ an alternative hardware accelerated blur implementation is automatically used.
  */
 @Deprecated
-public class RenderScriptBlur implements BlurAlgorithm {
+public class RenderScriptBlur implements RegionBlurAlgorithm {
+
+    public static final float MAX_BLUR_RADIUS = 25f;
+
     private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
     private final RenderScript renderScript;
     private final ScriptIntrinsicBlur blurScript;
     private Allocation outAllocation;
+    // Shares the memory with the destination bitmap of the region blur
+    @Nullable
+    private Allocation destinationAllocation;
+    @Nullable
+    private Bitmap lastDestination;
+    // Null until the region blur is checked on this device, see verifyRegionBlur
+    @Nullable
+    private Boolean regionBlurWorks;
 
     private int lastBitmapWidth = -1;
     private int lastBitmapHeight = -1;
@@ -63,7 +79,7 @@ public class RenderScriptBlur implements BlurAlgorithm {
                 lastBitmapHeight = bitmap.getHeight();
             }
 
-            blurScript.setRadius(min(blurRadius, 25f));
+            blurScript.setRadius(min(blurRadius, MAX_BLUR_RADIUS));
             blurScript.setInput(inAllocation);
             //do not use inAllocation in forEach. it will cause visual artifacts on blurred Bitmap
             blurScript.forEach(outAllocation);
@@ -78,6 +94,94 @@ public class RenderScriptBlur implements BlurAlgorithm {
         return bitmap;
     }
 
+    /**
+     * Blurs into an allocation created from the destination and copies the result into the destination,
+     * the snapshot in the source stays as is. The region is only respected since API 23,
+     * older versions blur the whole bitmap.
+     * <p>
+     * The first call checks that the destination actually receives the result on this device.
+     * If it doesn't, the source is copied into the destination and blurred there with {@link #blur(Bitmap, float)}.
+     */
+    @Override
+    public void blur(@NonNull Bitmap source, @NonNull Bitmap destination, @NonNull Rect region, float blurRadius) {
+        if (regionBlurWorks == null) {
+            regionBlurWorks = verifyRegionBlur();
+        }
+        try {
+            if (regionBlurWorks) {
+                blurRegion(source, destination, region, blurRadius);
+                return;
+            }
+        } catch (Exception e) {
+            Log.e("BlurView", "RenderScript blur failed. Rendering unblurred snapshot", e);
+        }
+        destination.eraseColor(0);
+        new Canvas(destination).drawBitmap(source, 0f, 0f, null);
+        if (!regionBlurWorks) {
+            blur(destination, blurRadius);
+        }
+    }
+
+    private void blurRegion(@NonNull Bitmap source, @NonNull Bitmap destination, @NonNull Rect region, float blurRadius) {
+        Allocation inAllocation = Allocation.createFromBitmap(renderScript, source);
+        try {
+            if (destination != lastDestination || destinationAllocation == null) {
+                releaseDestinationAllocation();
+                destinationAllocation = Allocation.createFromBitmap(renderScript, destination);
+                lastDestination = destination;
+            }
+
+            blurScript.setRadius(min(blurRadius, MAX_BLUR_RADIUS));
+            blurScript.setInput(inAllocation);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                Script.LaunchOptions options = new Script.LaunchOptions()
+                        .setX(region.left, region.right)
+                        .setY(region.top, region.bottom);
+                blurScript.forEach(destinationAllocation, options);
+            } else {
+                blurScript.forEach(destinationAllocation);
+            }
+            // The script may have written into its own copy of the memory, copy it into the bitmap
+            destinationAllocation.copyTo(destination);
+        } finally {
+            inAllocation.destroy();
+        }
+    }
+
+    /**
+     * Blurs a white bitmap into a black one. Any driver that delivers the result leaves the destination white.
+     */
+    private boolean verifyRegionBlur() {
+        Bitmap source = Bitmap.createBitmap(8, 8, Bitmap.Config.ARGB_8888);
+        Bitmap destination = Bitmap.createBitmap(8, 8, Bitmap.Config.ARGB_8888);
+        try {
+            source.eraseColor(Color.WHITE);
+            destination.eraseColor(Color.BLACK);
+            blurRegion(source, destination, new Rect(0, 0, 8, 8), 2f);
+            int pixel = destination.getPixel(4, 4);
+            if (Color.red(pixel) > 0xf0 && Color.green(pixel) > 0xf0 && Color.blue(pixel) > 0xf0) {
+                return true;
+            }
+            Log.w("BlurView", "RenderScript region blur doesn't reach the destination, blurring in place");
+            return false;
+        } catch (Exception e) {
+            Log.w("BlurView", "RenderScript region blur failed, blurring in place", e);
+            return false;
+        } finally {
+            releaseDestinationAllocation();
+            source.recycle();
+            destination.recycle();
+        }
+    }
+
+    private void releaseDestinationAllocation() {
+        if (destinationAllocation != null) {
+            destinationAllocation.destroy();
+            destinationAllocation = null;
+        }
+        lastDestination = null;
+    }
+
     @Override
     public final void destroy() {
         blurScript.destroy();
@@ -85,6 +189,7 @@ public class RenderScriptBlur implements BlurAlgorithm {
         if (outAllocation != null) {
             outAllocation.destroy();
         }
+        releaseDestinationAllocation();
     }
 
     @Override
@@ -98,6 +203,17 @@ public class RenderScriptBlur implements BlurAlgorithm {
         return Bitmap.Config.ARGB_8888;
     }
 
+    @Override
+    public int getStrideAlignment() {
+        // Avoids an extra copy of the allocation for the stride of the driver
+        return SizeScaler.DEFAULT_STRIDE_ALIGNMENT;
+    }
+
+    @Override
+    public float getMaxBlurRadius() {
+        return MAX_BLUR_RADIUS;
+    }
+
     @Override
     public void render(@NonNull Canvas canvas, @NonNull Bitmap bitmap) {
         canvas.drawBitmap(bitmap, 0f, 0f, paint);
@@ -0,0 +1,201 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Captures and blurs the snapshot in {@link Bitmap.Config#RGB_565}, at half the memory
+ * and half the capture and upload bandwidth of ARGB_8888.
+ * <p>
+ * The 565 pixels are expanded to 8 bits per channel and blurred by a {@link SoftwareBlur},
+ * so the blur itself keeps more precision than the 565 format has. On write-back the extra
+ * precision is turned into a 4x4 ordered dither instead of being truncated, which hides the banding
+ * of the smooth gradients a blur produces. Colors that are exactly representable in 565 are kept as is,
+ * so solid areas stay solid.
+ * <p>
+ * RGB_565 has no alpha, so it's only meant for opaque content. Transparent parts of the snapshot
+ * turn black, so set an opaque frame clear drawable (see {@link BlurViewFacade#setFrameClearDrawable})
+ * unless the content behind the BlurView is opaque anyway.
+ */
+public class Rgb565Blur implements BlurAlgorithm {
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    // 4x4 Bayer matrix, thresholds are (value + 0.5) / 16
+    private static final int[] BAYER = {
+            0, 8, 2, 10,
+            12, 4, 14, 6,
+            3, 11, 1, 9,
+            15, 7, 13, 5
+    };
+    // Dithered 8 to 5 and 8 to 6 bit conversions, indexed by the Bayer value * 256 + the 8 bit value
+    private static final byte[] DITHER_5 = ditherTable(5);
+    private static final byte[] DITHER_6 = ditherTable(6);
+
+    private final SoftwareBlur blur;
+    private Paint paint;
+
+    public Rgb565Blur() {
+        this(new StackBlur());
+    }
+
+    /**
+     * @param blur the blur to run on the expanded pixels
+     */
+    public Rgb565Blur(@NonNull SoftwareBlur blur) {
+        this.blur = blur;
+    }
+
+    @Override
+    public Bitmap blur(@NonNull Bitmap bitmap, float blurRadius) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int size = width * height;
+        // Holds the packed 565 pixels in the first half, and the expanded pixels while blurring
+        int[] pixels = PixelBufferArena.obtain(size);
+        try {
+            if (bitmap.getConfig() != Bitmap.Config.RGB_565 || bitmap.getRowBytes() != width * 2) {
+                // Not the raw layout this expects, Android converts the pixels instead
+                bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+                blur.blurOpaque(pixels, width, height, blurRadius);
+                bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+                return bitmap;
+            }
+            IntBuffer buffer = IntBuffer.wrap(pixels, 0, packedSize(size));
+            bitmap.copyPixelsToBuffer(buffer);
+            blurPacked(pixels, width, height, blurRadius);
+            buffer.rewind();
+            bitmap.copyPixelsFromBuffer(buffer);
+        } finally {
+            PixelBufferArena.recycle(pixels);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Blurs the raw 565 pixels in place.
+     *
+     * @param pixels the 565 pixels packed 2 per int in the native byte order, as copied by
+     *               {@link Bitmap#copyPixelsToBuffer}. Must have room for width * height ints.
+     */
+    void blurPacked(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        int size = width * height;
+        unpack(pixels, size);
+        blur.blurOpaque(pixels, width, height, blurRadius);
+        pack(pixels, width, height);
+    }
+
+    static int packedSize(int size) {
+        return (size + 1) / 2;
+    }
+
+    /**
+     * Expands the packed 565 pixels to ARGB in place.
+     * Goes from the end, so every packed int is read before it's overwritten.
+     */
+    static void unpack(int[] pixels, int size) {
+        for (int i = size - 1; i >= 0; i--) {
+            int packed = pixels[i >> 1];
+            int shift = ((i & 1) == 1) == LITTLE_ENDIAN ? 16 : 0;
+            pixels[i] = expand((packed >>> shift) & 0xffff);
+        }
+    }
+
+    /**
+     * Packs the ARGB pixels back to 565 with dithering, 2 per int. Goes from the start,
+     * so every ARGB pixel is read before it's overwritten.
+     */
+    static void pack(int[] pixels, int width, int height) {
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            int bayerRow = (y & 3) << 2;
+            for (int x = 0; x < width; x++, index++) {
+                int ditherOffset = BAYER[bayerRow + (x & 3)] << 8;
+                int pixel = pixels[index];
+                int value = (DITHER_5[ditherOffset + ((pixel >> 16) & 0xff)] & 0xff) << 11
+                        | (DITHER_6[ditherOffset + ((pixel >> 8) & 0xff)] & 0xff) << 5
+                        | (DITHER_5[ditherOffset + (pixel & 0xff)] & 0xff);
+                int shift = ((index & 1) == 1) == LITTLE_ENDIAN ? 16 : 0;
+                int packedIndex = index >> 1;
+                int mask = 0xffff << shift;
+                pixels[packedIndex] = (pixels[packedIndex] & ~mask) | (value << shift);
+            }
+        }
+    }
+
+    static int expand(int rgb565) {
+        int r = rgb565 >>> 11;
+        int g = (rgb565 >> 5) & 0x3f;
+        int b = rgb565 & 0x1f;
+        return 0xff000000
+                | (r << 3 | r >> 2) << 16
+                | (g << 2 | g >> 4) << 8
+                | (b << 3 | b >> 2);
+    }
+
+    private static int expandChannel(int value, int bits) {
+        return value << (8 - bits) | value >> (2 * bits - 8);
+    }
+
+    /**
+     * For every 8 bit value, finds the closest lower and upper values in the reduced precision
+     * and picks the upper one if the position between them is above the dither threshold
+     */
+    private static byte[] ditherTable(int bits) {
+        int max = (1 << bits) - 1;
+        byte[] table = new byte[16 * 256];
+        for (int value = 0; value < 256; value++) {
+            int lower = 0;
+            while (lower < max && expandChannel(lower + 1, bits) <= value) {
+                lower++;
+            }
+            int lowerValue = expandChannel(lower, bits);
+            float fraction = lower == max ? 0f : (float) (value - lowerValue) / (expandChannel(lower + 1, bits) - lowerValue);
+            for (int threshold = 0; threshold < 16; threshold++) {
+                boolean up = fraction > (threshold + 0.5f) / 16;
+                table[threshold * 256 + value] = (byte) (up ? lower + 1 : lower);
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public void destroy() {
+        blur.destroy();
+    }
+
+    @Override
+    public boolean canModifyBitmap() {
+        return true;
+    }
+
+    @Override
+    public int getStrideAlignment() {
+        return 1;
+    }
+
+    @Override
+    public float getMaxBlurRadius() {
+        return blur.getMaxBlurRadius();
+    }
+
+    @NonNull
+    @Override
+    public Bitmap.Config getSupportedBitmapConfig() {
+        return Bitmap.Config.RGB_565;
+    }
+
+    @Override
+    public void render(@NonNull Canvas canvas, @NonNull Bitmap bitmap) {
+        if (paint == null) {
+            paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        }
+        canvas.drawBitmap(bitmap, 0f, 0f, paint);
+    }
+}
@@ -0,0 +1,41 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A {@link SoftwareBlur} that is done in two independent passes: first every row, then every column.
+ * <p>
+ * Each row (or column) only depends on itself, so the passes can be split
+ * into stripes and processed in any order, see {@link ParallelBlur}.
+ */
+public abstract class SeparableBlur extends SoftwareBlur {
+
+    // Set while the pixels are known to be opaque, the passes can skip the alpha channel then
+    boolean opaque;
+
+    @Override
+    public void blur(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        blurRows(pixels, width, height, blurRadius, 0, height);
+        blurColumns(pixels, width, height, blurRadius, 0, width);
+    }
+
+    @Override
+    public void blurOpaque(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        opaque = true;
+        try {
+            blur(pixels, width, height, blurRadius);
+        } finally {
+            opaque = false;
+        }
+    }
+
+    /**
+     * Horizontal pass over the rows in [fromRow, toRow)
+     */
+    abstract void blurRows(@NonNull int[] pixels, int width, int height, float blurRadius, int fromRow, int toRow);
+
+    /**
+     * Vertical pass over the columns in [fromColumn, toColumn)
+     */
+    abstract void blurColumns(@NonNull int[] pixels, int width, int height, float blurRadius, int fromColumn, int toColumn);
+}
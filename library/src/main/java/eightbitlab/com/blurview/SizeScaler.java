@@ -4,30 +4,41 @@ import java.util.Objects;
 
 /**
  * Scales width and height by [scaleFactor],
- * and then rounds the size proportionally so the width is divisible by [ROUNDING_VALUE]
+ * and then rounds the size proportionally so the width is divisible by the stride alignment
+ * of the blur algorithm, see {@link BlurAlgorithm#getStrideAlignment()}
  */
 public class SizeScaler {
 
-    // Bitmap size should be divisible by ROUNDING_VALUE to meet stride requirement.
+    // Bitmap size should be divisible by the alignment to meet RenderScript stride requirement.
     // This will help avoiding an extra bitmap allocation when passing the bitmap to RenderScript for blur.
     // Usually it's 16, but on Samsung devices it's 64 for some reason.
-    private static final int ROUNDING_VALUE = 64;
+    public static final int DEFAULT_STRIDE_ALIGNMENT = 64;
     private final float scaleFactor;
-    private final boolean noStrideAlignment;
+    private final int strideAlignment;
 
     public SizeScaler(float scaleFactor) {
-        this(scaleFactor, false);
+        this(scaleFactor, DEFAULT_STRIDE_ALIGNMENT);
     }
 
     public SizeScaler(float scaleFactor, boolean noStrideAlignment) {
+        this(scaleFactor, noStrideAlignment ? 1 : DEFAULT_STRIDE_ALIGNMENT);
+    }
+
+    /**
+     * @param strideAlignment the scaled width is rounded up to a multiple of it, 1 to keep the width as is
+     */
+    public SizeScaler(float scaleFactor, int strideAlignment) {
+        if (strideAlignment < 1) {
+            throw new IllegalArgumentException("Stride alignment must be positive, got " + strideAlignment);
+        }
         this.scaleFactor = scaleFactor;
-        this.noStrideAlignment = noStrideAlignment;
+        this.strideAlignment = strideAlignment;
     }
 
     Size scale(int width, int height) {
         int nonRoundedScaledWidth = downscaleSize(width);
         int scaledWidth = roundSize(nonRoundedScaledWidth);
-        //Only width has to be aligned to ROUNDING_VALUE
+        //Only width has to be aligned to the stride alignment
         float roundingScaleFactor = (float) width / scaledWidth;
         //Ceiling because rounding or flooring might leave empty space on the View's bottom
         int scaledHeight = (int) Math.ceil(height / roundingScaleFactor);
@@ -39,21 +50,41 @@ public class SizeScaler {
         return scale(size.width, size.height);
     }
 
+    /**
+     * Plans the extra downscaling for a blur radius that the algorithm can't apply directly.
+     * Downscaling by n divides the sigma of the blur by n, in the downscaled pixels.
+     *
+     * @return the smallest integer factor that brings the radius within maxRadius, 1 if it already fits
+     */
+    static int radiusDownscale(float radius, float maxRadius) {
+        if (radius <= maxRadius) {
+            return 1;
+        }
+        return (int) Math.ceil(SoftwareBlur.radiusToSigma(radius) / SoftwareBlur.radiusToSigma(maxRadius));
+    }
+
+    /**
+     * @return the radius that gives the same blur on a snapshot that is downscaled by the factor
+     */
+    static float downscaleRadius(float radius, int downscale) {
+        if (downscale == 1) {
+            return radius;
+        }
+        return Math.max(0f, SoftwareBlur.sigmaToRadius(SoftwareBlur.radiusToSigma(radius) / downscale));
+    }
+
     boolean isZeroSized(int measuredWidth, int measuredHeight) {
         return downscaleSize(measuredHeight) == 0 || downscaleSize(measuredWidth) == 0;
     }
 
     /**
-     * Rounds a value to the nearest divisible by {@link #ROUNDING_VALUE} to meet stride requirement
+     * Rounds a value up to the nearest divisible by the stride alignment to meet stride requirement
      */
     private int roundSize(int value) {
-        if (noStrideAlignment) {
-            return value;
-        }
-        if (value % ROUNDING_VALUE == 0) {
+        if (value % strideAlignment == 0) {
             return value;
         }
-        return value - (value % ROUNDING_VALUE) + ROUNDING_VALUE;
+        return value - (value % strideAlignment) + strideAlignment;
     }
 
     private int downscaleSize(float value) {
@@ -0,0 +1,234 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Base class for blur algorithms implemented in plain Java.
+ * <p>
+ * Copies the bitmap pixels into an int[] buffer borrowed from the {@link PixelBufferArena},
+ * blurs them in place and writes them back to the same bitmap, so no allocations happen per frame
+ * once the arena holds a buffer of the bitmap size. The Bitmap API delegates to
+ * {@link #blur(PixelBuffer, float)}, which also takes int[] and direct buffers.
+ * <p>
+ * Subclasses only deal with ARGB int[] pixels, which makes them testable on a plain JVM.
+ * Bitmaps without alpha go through {@link #blurOpaque}, which only needs to blur 3 channels.
+ * <p>
+ * With {@link #setUseRawPixelCopies}, the pixels are copied as raw memory instead, see there.
+ */
+public abstract class SoftwareBlur implements BlurAlgorithm {
+    // Created lazily, so the pixel-level API can be used without the Android graphics stack
+    private Paint paint;
+    @Nullable
+    private PostProcessing postProcessing;
+    private boolean useRawPixelCopies;
+    private final BitmapPixelBuffer bitmapBuffer = new BitmapPixelBuffer();
+    // True while the pixels being blurred are premultiplied, which only happens with the raw pixel copies
+    boolean premultiplied;
+
+    /**
+     * Copies the pixels with {@link Bitmap#copyPixelsToBuffer} and {@link Bitmap#copyPixelsFromBuffer}
+     * instead of {@link Bitmap#getPixels} and {@link Bitmap#setPixels}. Disabled by default.
+     * <p>
+     * The pixels still go through the same staging int[] on the Java heap, only the copies differ.
+     * Both are plain memory copies, without the unpremultiply and premultiply conversions
+     * that getPixels and setPixels do for every pixel. The premultiplied pixels are blurred as is,
+     * same as RenderScript does, so semi-transparent content doesn't get the dark fringes
+     * of blurring unpremultiplied colors. They are only converted for the saturation and overlay.
+     * <p>
+     * Only used for ARGB_8888 bitmaps without row padding, others take the regular path.
+     */
+    public void setUseRawPixelCopies(boolean useRawPixelCopies) {
+        this.useRawPixelCopies = useRawPixelCopies;
+    }
+
+    public boolean isUsingRawPixelCopies() {
+        return useRawPixelCopies;
+    }
+
+    @Override
+    public final Bitmap blur(@NonNull Bitmap bitmap, float blurRadius) {
+        bitmapBuffer.set(bitmap, useRawPixelCopies);
+        try {
+            blur(bitmapBuffer, blurRadius);
+        } finally {
+            bitmapBuffer.set(null, false);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Applies only the saturation and overlay to the bitmap, without the blur.
+     * Used for the sharp level of {@link BlurLevels}.
+     */
+    void applyPostProcessing(@NonNull Bitmap bitmap) {
+        if (postProcessing == null || postProcessing.isIdentity()) {
+            return;
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = PixelBufferArena.obtain(width * height);
+        try {
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            postProcessing.apply(pixels, width, height);
+            bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        } finally {
+            PixelBufferArena.recycle(pixels);
+        }
+    }
+
+    /**
+     * Blurs the pixels of the buffer, including the saturation and overlay if they are set.
+     * A buffer backed by a packed int[] is blurred in place, others are copied through an int[]
+     * from the {@link PixelBufferArena}.
+     */
+    public final void blur(@NonNull PixelBuffer buffer, float blurRadius) {
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        int[] array = buffer.getArray();
+        if (array != null && buffer.getArrayOffset() == 0 && buffer.getStride() == width) {
+            blurPixels(array, width, height, blurRadius, buffer);
+            return;
+        }
+        int[] pixels = PixelBufferArena.obtain(width * height);
+        try {
+            buffer.read(pixels);
+            blurPixels(pixels, width, height, blurRadius, buffer);
+            buffer.write(pixels);
+        } finally {
+            PixelBufferArena.recycle(pixels);
+        }
+    }
+
+    private void blurPixels(int[] pixels, int width, int height, float blurRadius, PixelBuffer buffer) {
+        int format = buffer.getFormat();
+        if (format == PixelBuffer.FORMAT_ABGR_PREMULTIPLIED) {
+            blurPremultiplied(pixels, width, height, blurRadius, buffer.isOpaque(), true);
+            return;
+        }
+        if (buffer.isOpaque() || format == PixelBuffer.FORMAT_ARGB_PREMULTIPLIED) {
+            blurPremultiplied(pixels, width, height, blurRadius, buffer.isOpaque(), false);
+            return;
+        }
+        blur(pixels, width, height, blurRadius);
+        if (postProcessing != null) {
+            postProcessing.apply(pixels, width, height);
+        }
+    }
+
+    void blurPremultiplied(int[] pixels, int width, int height, float blurRadius, boolean opaque) {
+        blurPremultiplied(pixels, width, height, blurRadius, opaque, false);
+    }
+
+    /**
+     * Blurs premultiplied pixels in place, including the post processing.
+     * Opaque pixels are the same premultiplied or not.
+     *
+     * @param swapped true for 0xAABBGGRR pixels, the blur itself doesn't care about the order of the colors
+     */
+    void blurPremultiplied(int[] pixels, int width, int height, float blurRadius, boolean opaque, boolean swapped) {
+        if (opaque) {
+            blurOpaque(pixels, width, height, blurRadius);
+        } else {
+            premultiplied = true;
+            try {
+                blur(pixels, width, height, blurRadius);
+            } finally {
+                premultiplied = false;
+            }
+        }
+        if (postProcessing == null || postProcessing.isIdentity()) {
+            return;
+        }
+        int size = width * height;
+        if (swapped) {
+            DirectPixels.swapRedBlue(pixels, size);
+        }
+        if (opaque) {
+            postProcessing.apply(pixels, width, height);
+        } else {
+            DirectPixels.unpremultiply(pixels, size);
+            postProcessing.apply(pixels, width, height);
+            DirectPixels.premultiply(pixels, size);
+        }
+        if (swapped) {
+            DirectPixels.swapRedBlue(pixels, size);
+        }
+    }
+
+    /**
+     * Blurs the pixels in place.
+     *
+     * @param pixels     ARGB pixels, row by row, without padding between the rows
+     * @param width      width of the image
+     * @param height     height of the image
+     * @param blurRadius blur radius
+     */
+    public abstract void blur(@NonNull int[] pixels, int width, int height, float blurRadius);
+
+    /**
+     * Blurs pixels that are known to be fully opaque, in place.
+     * Used for bitmaps without alpha, see {@link Bitmap#hasAlpha()}.
+     * <p>
+     * Alpha of the result must stay 255. The default implementation is the regular blur,
+     * which keeps it for any weights that sum up to 1. Subclasses can skip the alpha channel instead.
+     */
+    public void blurOpaque(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        blur(pixels, width, height, blurRadius);
+    }
+
+    /**
+     * @param postProcessing effects to bake into the blurred pixels before they are written back to the bitmap
+     */
+    void setPostProcessing(@Nullable PostProcessing postProcessing) {
+        this.postProcessing = postProcessing;
+    }
+
+    /**
+     * @return the sigma of the Gaussian that RenderScript uses for the given radius.
+     * Software blurs that approximate a Gaussian use it to keep the same radius semantics.
+     */
+    static float radiusToSigma(float blurRadius) {
+        return 0.4f * blurRadius + 0.6f;
+    }
+
+    static float sigmaToRadius(float sigma) {
+        return (sigma - 0.6f) / 0.4f;
+    }
+
+    @Override
+    public void destroy() {
+        // The pixel buffers belong to the PixelBufferArena
+    }
+
+    @Override
+    public boolean canModifyBitmap() {
+        return true;
+    }
+
+    /**
+     * @return 1, the pixels are copied into a packed int[] anyway
+     */
+    @Override
+    public int getStrideAlignment() {
+        return 1;
+    }
+
+    @NonNull
+    @Override
+    public Bitmap.Config getSupportedBitmapConfig() {
+        return Bitmap.Config.ARGB_8888;
+    }
+
+    @Override
+    public void render(@NonNull Canvas canvas, @NonNull Bitmap bitmap) {
+        if (paint == null) {
+            paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        }
+        canvas.drawBitmap(bitmap, 0f, 0f, paint);
+    }
+}
@@ -0,0 +1,322 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Pure Java implementation of Mario Klingemann's StackBlur.
+ * <p>
+ * A drop-in replacement for {@link RenderScriptBlur} that doesn't depend on RenderScript.
+ * The cost per pixel doesn't depend on the radius, and radii above 25 are supported
+ * (up to {@link #MAX_RADIUS}).
+ * The weights of the StackBlur kernel closely match a Gaussian with the same sigma
+ * as the one RenderScript uses for a given radius, so the radius semantics are the same.
+ */
+public class StackBlur extends SeparableBlur {
+
+    public static final int MAX_RADIUS = 254;
+
+    // sum * MUL_TABLE[radius] >>> SHIFT == sum / (radius + 1)^2.
+    // The product never exceeds 2^32, so it's safe to do in int with the unsigned shift.
+    static final int SHIFT = 24;
+    static final int[] MUL_TABLE = new int[MAX_RADIUS + 1];
+
+    static {
+        for (int radius = 1; radius <= MAX_RADIUS; radius++) {
+            long divisor = (long) (radius + 1) * (radius + 1);
+            MUL_TABLE[radius] = (int) (((1L << SHIFT) + divisor - 1) / divisor);
+        }
+    }
+
+    int[] stack = new int[0];
+
+    static int toStackRadius(float blurRadius) {
+        return Math.min(Math.round(blurRadius), MAX_RADIUS);
+    }
+
+    @Override
+    public float getMaxBlurRadius() {
+        return MAX_RADIUS;
+    }
+
+    @Override
+    void blurRows(@NonNull int[] pixels, int width, int height, float blurRadius, int fromRow, int toRow) {
+        int radius = toStackRadius(blurRadius);
+        if (radius < 1) {
+            return;
+        }
+        for (int y = fromRow; y < toRow; y++) {
+            if (opaque) {
+                blurLineOpaque(pixels, y * width, 1, width, radius);
+            } else {
+                blurLine(pixels, y * width, 1, width, radius);
+            }
+        }
+    }
+
+    @Override
+    void blurColumns(@NonNull int[] pixels, int width, int height, float blurRadius, int fromColumn, int toColumn) {
+        int radius = toStackRadius(blurRadius);
+        if (radius < 1) {
+            return;
+        }
+        for (int x = fromColumn; x < toColumn; x++) {
+            if (opaque) {
+                blurLineOpaque(pixels, x, width, height, radius);
+            } else {
+                blurLine(pixels, x, width, height, radius);
+            }
+        }
+    }
+
+    /**
+     * @return the ring buffer of the pixels in the window, grown to the size if needed
+     */
+    int[] stack(int size) {
+        if (stack.length < size) {
+            stack = new int[size];
+        }
+        return stack;
+    }
+
+    /**
+     * Blurs a single row or column in place.
+     * Writes always trail the reads, so the window only ever sees the original pixels.
+     */
+    void blurLine(int[] pixels, int offset, int step, int count, int radius) {
+        int div = radius * 2 + 1;
+        int[] stack = stack(div);
+        int mul = MUL_TABLE[radius];
+        int last = count - 1;
+
+        int sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+        int sumInA = 0, sumInR = 0, sumInG = 0, sumInB = 0;
+        int sumOutA = 0, sumOutR = 0, sumOutG = 0, sumOutB = 0;
+
+        int pixel = pixels[offset];
+        int a = pixel >>> 24, r = (pixel >> 16) & 0xff, g = (pixel >> 8) & 0xff, b = pixel & 0xff;
+        int weight = (radius + 1) * (radius + 2) / 2;
+        sumA = a * weight;
+        sumR = r * weight;
+        sumG = g * weight;
+        sumB = b * weight;
+        sumOutA = a * (radius + 1);
+        sumOutR = r * (radius + 1);
+        sumOutG = g * (radius + 1);
+        sumOutB = b * (radius + 1);
+        for (int i = 0; i <= radius; i++) {
+            stack[i] = pixel;
+        }
+
+        for (int i = 1; i <= radius; i++) {
+            pixel = pixels[offset + Math.min(i, last) * step];
+            stack[i + radius] = pixel;
+            weight = radius + 1 - i;
+            a = pixel >>> 24;
+            r = (pixel >> 16) & 0xff;
+            g = (pixel >> 8) & 0xff;
+            b = pixel & 0xff;
+            sumA += a * weight;
+            sumR += r * weight;
+            sumG += g * weight;
+            sumB += b * weight;
+            sumInA += a;
+            sumInR += r;
+            sumInG += g;
+            sumInB += b;
+        }
+
+        int stackIn = 0;
+        int stackOut = radius + 1;
+        int position = offset;
+        for (int i = 0; i < count; i++, position += step) {
+            pixels[position] = ((sumA * mul) >>> SHIFT) << 24
+                    | ((sumR * mul) >>> SHIFT) << 16
+                    | ((sumG * mul) >>> SHIFT) << 8
+                    | ((sumB * mul) >>> SHIFT);
+
+            sumA -= sumOutA;
+            sumR -= sumOutR;
+            sumG -= sumOutG;
+            sumB -= sumOutB;
+
+            pixel = stack[stackIn];
+            sumOutA -= pixel >>> 24;
+            sumOutR -= (pixel >> 16) & 0xff;
+            sumOutG -= (pixel >> 8) & 0xff;
+            sumOutB -= pixel & 0xff;
+
+            pixel = pixels[offset + Math.min(i + radius + 1, last) * step];
+            stack[stackIn] = pixel;
+            sumInA += pixel >>> 24;
+            sumInR += (pixel >> 16) & 0xff;
+            sumInG += (pixel >> 8) & 0xff;
+            sumInB += pixel & 0xff;
+
+            sumA += sumInA;
+            sumR += sumInR;
+            sumG += sumInG;
+            sumB += sumInB;
+
+            if (++stackIn == div) {
+                stackIn = 0;
+            }
+
+            pixel = stack[stackOut];
+            a = pixel >>> 24;
+            r = (pixel >> 16) & 0xff;
+            g = (pixel >> 8) & 0xff;
+            b = pixel & 0xff;
+            sumOutA += a;
+            sumOutR += r;
+            sumOutG += g;
+            sumOutB += b;
+            sumInA -= a;
+            sumInR -= r;
+            sumInG -= g;
+            sumInB -= b;
+
+            if (++stackOut == div) {
+                stackOut = 0;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #blurLine} for opaque pixels, only the color channels are summed up
+     * and alpha is written as 255.
+     */
+    void blurLineOpaque(int[] pixels, int offset, int step, int count, int radius) {
+        int div = radius * 2 + 1;
+        int[] stack = stack(div);
+        int mul = MUL_TABLE[radius];
+        int last = count - 1;
+
+        int sumR, sumG, sumB;
+        int sumInR = 0, sumInG = 0, sumInB = 0;
+        int sumOutR, sumOutG, sumOutB;
+
+        int pixel = pixels[offset];
+        int r = (pixel >> 16) & 0xff, g = (pixel >> 8) & 0xff, b = pixel & 0xff;
+        int weight = (radius + 1) * (radius + 2) / 2;
+        sumR = r * weight;
+        sumG = g * weight;
+        sumB = b * weight;
+        sumOutR = r * (radius + 1);
+        sumOutG = g * (radius + 1);
+        sumOutB = b * (radius + 1);
+        for (int i = 0; i <= radius; i++) {
+            stack[i] = pixel;
+        }
+
+        for (int i = 1; i <= radius; i++) {
+            pixel = pixels[offset + Math.min(i, last) * step];
+            stack[i + radius] = pixel;
+            weight = radius + 1 - i;
+            r = (pixel >> 16) & 0xff;
+            g = (pixel >> 8) & 0xff;
+            b = pixel & 0xff;
+            sumR += r * weight;
+            sumG += g * weight;
+            sumB += b * weight;
+            sumInR += r;
+            sumInG += g;
+            sumInB += b;
+        }
+
+        int stackIn = 0;
+        int stackOut = radius + 1;
+        int position = offset;
+        for (int i = 0; i < count; i++, position += step) {
+            pixels[position] = 0xff000000
+                    | ((sumR * mul) >>> SHIFT) << 16
+                    | ((sumG * mul) >>> SHIFT) << 8
+                    | ((sumB * mul) >>> SHIFT);
+
+            sumR -= sumOutR;
+            sumG -= sumOutG;
+            sumB -= sumOutB;
+
+            pixel = stack[stackIn];
+            sumOutR -= (pixel >> 16) & 0xff;
+            sumOutG -= (pixel >> 8) & 0xff;
+            sumOutB -= pixel & 0xff;
+
+            pixel = pixels[offset + Math.min(i + radius + 1, last) * step];
+            stack[stackIn] = pixel;
+            sumInR += (pixel >> 16) & 0xff;
+            sumInG += (pixel >> 8) & 0xff;
+            sumInB += pixel & 0xff;
+
+            sumR += sumInR;
+            sumG += sumInG;
+            sumB += sumInB;
+
+            if (++stackIn == div) {
+                stackIn = 0;
+            }
+
+            pixel = stack[stackOut];
+            r = (pixel >> 16) & 0xff;
+            g = (pixel >> 8) & 0xff;
+            b = pixel & 0xff;
+            sumOutR += r;
+            sumOutG += g;
+            sumOutB += b;
+            sumInR -= r;
+            sumInG -= g;
+            sumInB -= b;
+
+            if (++stackOut == div) {
+                stackOut = 0;
+            }
+        }
+    }
+
+    /**
+     * Single channel version of {@link #blurLine} for 8 bit masks, see {@link MaskBlur}
+     */
+    void blurMaskLine(byte[] mask, int offset, int step, int count, int radius) {
+        int div = radius * 2 + 1;
+        int[] stack = stack(div);
+        int mul = MUL_TABLE[radius];
+        int last = count - 1;
+
+        int value = mask[offset] & 0xff;
+        int sum = value * ((radius + 1) * (radius + 2) / 2);
+        int sumIn = 0;
+        int sumOut = value * (radius + 1);
+        for (int i = 0; i <= radius; i++) {
+            stack[i] = value;
+        }
+        for (int i = 1; i <= radius; i++) {
+            value = mask[offset + Math.min(i, last) * step] & 0xff;
+            stack[i + radius] = value;
+            sum += value * (radius + 1 - i);
+            sumIn += value;
+        }
+
+        int stackIn = 0;
+        int stackOut = radius + 1;
+        int position = offset;
+        for (int i = 0; i < count; i++, position += step) {
+            mask[position] = (byte) ((sum * mul) >>> SHIFT);
+            sum -= sumOut;
+            sumOut -= stack[stackIn];
+
+            value = mask[offset + Math.min(i + radius + 1, last) * step] & 0xff;
+            stack[stackIn] = value;
+            sumIn += value;
+            sum += sumIn;
+            if (++stackIn == div) {
+                stackIn = 0;
+            }
+
+            value = stack[stackOut];
+            sumOut += value;
+            sumIn -= value;
+            if (++stackOut == div) {
+                stackOut = 0;
+            }
+        }
+    }
+}
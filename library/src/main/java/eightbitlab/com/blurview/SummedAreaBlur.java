@@ -0,0 +1,234 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Box blur with a different radius for every pixel, built on a summed-area table (integral image).
+ * <p>
+ * Once the table is built, the sum of any rectangle takes 4 lookups, so the cost per pixel
+ * doesn't depend on the radius, nor on how much the radius varies across the image.
+ * Two box passes are done to get closer to a Gaussian, each one with the half of the variance
+ * of the RenderScript sigma for the radius. Near the edges the boxes are cut by the image bounds
+ * and averaged over the remaining area.
+ * <p>
+ * Used for the progressive blur ({@link BlurView#GRADIENT_TOP_TO_BOTTOM} and the other directions)
+ * below API 31, see {@link #setGradientDirection}. Arbitrary radius maps can be passed to
+ * {@link #blur(int[], int, int, float[])}.
+ */
+public class SummedAreaBlur extends SoftwareBlur {
+
+    static final int PASSES = 2;
+    // Same shape as the RenderEffect gradient: full blur for the first third, then a linear fade
+    static final float GRADIENT_PLATEAU = 0.33f;
+
+    private int gradientDirection = BlurView.GRADIENT_NONE;
+
+    // 4 interleaved channels of (width + 1) * (height + 1) sums. The sums overflow for big images,
+    // but the differences of the sums stay correct as long as a single box fits into an int.
+    // Both are borrowed from the PixelBufferArena for the duration of a blur
+    private int[] table;
+    private int[] boxRadii;
+    private float[] radiusMap = new float[0];
+
+    /**
+     * @param direction one of the {@code BlurView.GRADIENT_*} constants. The blur radius and the alpha
+     *                  fade out in that direction, same as the RenderEffect gradient on API 31+.
+     */
+    public void setGradientDirection(int direction) {
+        this.gradientDirection = direction;
+    }
+
+    public int getGradientDirection() {
+        return gradientDirection;
+    }
+
+    @Override
+    public void blur(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        int size = width * height;
+        if (radiusMap.length < size) {
+            radiusMap = new float[size];
+        }
+        float[] map = radiusMap;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, index = y * width; x < width; x++, index++) {
+                map[index] = blurRadius * gradient(gradientDirection, x, y, width, height);
+            }
+        }
+        blur(pixels, width, height, map);
+        if (gradientDirection != BlurView.GRADIENT_NONE) {
+            fadeAlpha(pixels, width, height);
+        }
+    }
+
+    /**
+     * Blurs the pixels in place, every pixel with its own radius.
+     *
+     * @param radiusMap blur radius of every pixel, row by row, same semantics as the radius of the other blurs
+     */
+    public void blur(@NonNull int[] pixels, int width, int height, @NonNull float[] radiusMap) {
+        int size = width * height;
+        boxRadii = PixelBufferArena.obtain(size);
+        try {
+            blur(pixels, width, height, radiusMap, size);
+        } finally {
+            PixelBufferArena.recycle(boxRadii);
+            boxRadii = null;
+        }
+    }
+
+    private void blur(int[] pixels, int width, int height, float[] radiusMap, int size) {
+        int[] radii = boxRadii;
+        float lastRadius = -1f;
+        int lastBoxRadius = 0;
+        boolean blurred = false;
+        for (int i = 0; i < size; i++) {
+            float radius = radiusMap[i];
+            // Neighbours usually share the radius, no need to take the square root again
+            if (radius != lastRadius) {
+                lastRadius = radius;
+                lastBoxRadius = toBoxRadius(radius);
+            }
+            radii[i] = lastBoxRadius;
+            blurred |= lastBoxRadius > 0;
+        }
+        if (!blurred) {
+            return;
+        }
+        table = PixelBufferArena.obtain((width + 1) * (height + 1) * 4);
+        try {
+            for (int pass = 0; pass < PASSES; pass++) {
+                buildTable(pixels, width, height);
+                boxPass(pixels, width, height);
+            }
+        } finally {
+            PixelBufferArena.recycle(table);
+            table = null;
+        }
+    }
+
+    /**
+     * @return the radius of a box that has the half of the variance of the Gaussian for the blur radius
+     */
+    static int toBoxRadius(float blurRadius) {
+        if (blurRadius <= 0f) {
+            return 0;
+        }
+        float sigma = radiusToSigma(blurRadius);
+        // Variance of a box of the width w is (w^2 - 1) / 12
+        double variance = (double) sigma * sigma / PASSES;
+        return (int) Math.round((Math.sqrt(12 * variance + 1) - 1) / 2);
+    }
+
+    /**
+     * @return how much of the blur is kept at the pixel for the gradient direction, from 0 to 1
+     */
+    static float gradient(int direction, int x, int y, int width, int height) {
+        float position;
+        switch (direction) {
+            case BlurView.GRADIENT_TOP_TO_BOTTOM:
+                position = (y + 0.5f) / height;
+                break;
+            case BlurView.GRADIENT_BOTTOM_TO_TOP:
+                position = 1f - (y + 0.5f) / height;
+                break;
+            case BlurView.GRADIENT_LEFT_TO_RIGHT:
+                position = (x + 0.5f) / width;
+                break;
+            case BlurView.GRADIENT_RIGHT_TO_LEFT:
+                position = 1f - (x + 0.5f) / width;
+                break;
+            default:
+                return 1f;
+        }
+        if (position <= GRADIENT_PLATEAU) {
+            return 1f;
+        }
+        return Math.max(0f, 1f - (position - GRADIENT_PLATEAU) / (1f - GRADIENT_PLATEAU));
+    }
+
+    private void buildTable(int[] pixels, int width, int height) {
+        int[] table = this.table;
+        int stride = (width + 1) * 4;
+        for (int i = 0; i < stride; i++) {
+            table[i] = 0;
+        }
+        for (int y = 0; y < height; y++) {
+            int row = (y + 1) * stride;
+            table[row] = table[row + 1] = table[row + 2] = table[row + 3] = 0;
+            int sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+            for (int x = 0, index = y * width, t = row + 4; x < width; x++, index++, t += 4) {
+                int pixel = pixels[index];
+                sumA += pixel >>> 24;
+                sumR += (pixel >> 16) & 0xff;
+                sumG += (pixel >> 8) & 0xff;
+                sumB += pixel & 0xff;
+                table[t] = table[t - stride] + sumA;
+                table[t + 1] = table[t + 1 - stride] + sumR;
+                table[t + 2] = table[t + 2 - stride] + sumG;
+                table[t + 3] = table[t + 3 - stride] + sumB;
+            }
+        }
+    }
+
+    private void boxPass(int[] pixels, int width, int height) {
+        int[] table = this.table;
+        int[] radii = boxRadii;
+        int stride = (width + 1) * 4;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, index = y * width; x < width; x++, index++) {
+                int radius = radii[index];
+                if (radius == 0) {
+                    continue;
+                }
+                int left = Math.max(x - radius, 0);
+                int right = Math.min(x + radius + 1, width);
+                int top = Math.max(y - radius, 0);
+                int bottom = Math.min(y + radius + 1, height);
+                int topLeft = top * stride + left * 4;
+                int topRight = top * stride + right * 4;
+                int bottomLeft = bottom * stride + left * 4;
+                int bottomRight = bottom * stride + right * 4;
+                float inverseArea = 1f / ((right - left) * (bottom - top));
+                int a = table[bottomRight] - table[topRight] - table[bottomLeft] + table[topLeft];
+                int r = table[bottomRight + 1] - table[topRight + 1] - table[bottomLeft + 1] + table[topLeft + 1];
+                int g = table[bottomRight + 2] - table[topRight + 2] - table[bottomLeft + 2] + table[topLeft + 2];
+                int b = table[bottomRight + 3] - table[topRight + 3] - table[bottomLeft + 3] + table[topLeft + 3];
+                pixels[index] = (int) (a * inverseArea + 0.5f) << 24
+                        | (int) (r * inverseArea + 0.5f) << 16
+                        | (int) (g * inverseArea + 0.5f) << 8
+                        | (int) (b * inverseArea + 0.5f);
+            }
+        }
+    }
+
+    /**
+     * Fades the blurred content out, so the sharp content under the BlurView shows through
+     */
+    private void fadeAlpha(int[] pixels, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, index = y * width; x < width; x++, index++) {
+                float fade = gradient(gradientDirection, x, y, width, height);
+                if (fade < 1f) {
+                    int pixel = pixels[index];
+                    int alpha = (int) ((pixel >>> 24) * fade + 0.5f);
+                    if (premultiplied) {
+                        // The colors fade along with the alpha
+                        int alphaFade = (int) (fade * 256 + 0.5f);
+                        pixels[index] = alpha << 24
+                                | ((pixel >> 16 & 0xff) * alphaFade >> 8) << 16
+                                | ((pixel >> 8 & 0xff) * alphaFade >> 8) << 8
+                                | (pixel & 0xff) * alphaFade >> 8;
+                    } else {
+                        pixels[index] = alpha << 24 | (pixel & 0x00ffffff);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        radiusMap = new float[0];
+    }
+}
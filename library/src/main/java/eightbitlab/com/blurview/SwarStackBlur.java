@@ -0,0 +1,184 @@
+package eightbitlab.com.blurview;
+
+/**
+ * {@link StackBlur} with SIMD-within-a-register sums.
+ * <p>
+ * Red and blue, as well as alpha and green, are kept in two 32 bit lanes of a long,
+ * so every add and subtract of the sliding window updates two channels at once.
+ * The biggest sum is 255 * (radius + 1)^2 < 2^24, which leaves 8 guard bits per lane,
+ * and none of the sums ever goes negative, so no carry or borrow crosses the lanes.
+ * The output is bit-identical to {@link StackBlur}.
+ * <p>
+ * Opaque pixels only need red and blue packed, green is summed up on its own.
+ * The 8 bit masks of {@link MaskBlur} have a single channel, so there's nothing to pack
+ * and they go through the scalar {@link StackBlur#blurMaskLine}.
+ */
+public class SwarStackBlur extends StackBlur {
+
+    private static final long LANE_MASK = 0xffffffffL;
+
+    @Override
+    void blurLine(int[] pixels, int offset, int step, int count, int radius) {
+        int div = radius * 2 + 1;
+        int[] stack = stack(div);
+        int mul = MUL_TABLE[radius];
+        int last = count - 1;
+
+        int pixel = pixels[offset];
+        long rb = spreadRedBlue(pixel);
+        long ag = spreadAlphaGreen(pixel);
+        long sumRB = rb * ((radius + 1) * (radius + 2) / 2);
+        long sumAG = ag * ((radius + 1) * (radius + 2) / 2);
+        long sumOutRB = rb * (radius + 1);
+        long sumOutAG = ag * (radius + 1);
+        long sumInRB = 0;
+        long sumInAG = 0;
+        for (int i = 0; i <= radius; i++) {
+            stack[i] = pixel;
+        }
+
+        for (int i = 1; i <= radius; i++) {
+            pixel = pixels[offset + Math.min(i, last) * step];
+            stack[i + radius] = pixel;
+            rb = spreadRedBlue(pixel);
+            ag = spreadAlphaGreen(pixel);
+            sumRB += rb * (radius + 1 - i);
+            sumAG += ag * (radius + 1 - i);
+            sumInRB += rb;
+            sumInAG += ag;
+        }
+
+        int stackIn = 0;
+        int stackOut = radius + 1;
+        int position = offset;
+        for (int i = 0; i < count; i++, position += step) {
+            // Unsigned shift keeps the products right even when they don't fit into a signed int
+            pixels[position] = (((int) (sumAG >>> 32) * mul) >>> SHIFT) << 24
+                    | (((int) (sumRB >>> 32) * mul) >>> SHIFT) << 16
+                    | (((int) (sumAG & LANE_MASK) * mul) >>> SHIFT) << 8
+                    | (((int) (sumRB & LANE_MASK) * mul) >>> SHIFT);
+
+            sumRB -= sumOutRB;
+            sumAG -= sumOutAG;
+
+            pixel = stack[stackIn];
+            sumOutRB -= spreadRedBlue(pixel);
+            sumOutAG -= spreadAlphaGreen(pixel);
+
+            pixel = pixels[offset + Math.min(i + radius + 1, last) * step];
+            stack[stackIn] = pixel;
+            sumInRB += spreadRedBlue(pixel);
+            sumInAG += spreadAlphaGreen(pixel);
+
+            sumRB += sumInRB;
+            sumAG += sumInAG;
+
+            if (++stackIn == div) {
+                stackIn = 0;
+            }
+
+            pixel = stack[stackOut];
+            rb = spreadRedBlue(pixel);
+            ag = spreadAlphaGreen(pixel);
+            sumOutRB += rb;
+            sumOutAG += ag;
+            sumInRB -= rb;
+            sumInAG -= ag;
+
+            if (++stackOut == div) {
+                stackOut = 0;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #blurLine} for opaque pixels, alpha is written as 255
+     */
+    @Override
+    void blurLineOpaque(int[] pixels, int offset, int step, int count, int radius) {
+        int div = radius * 2 + 1;
+        int[] stack = stack(div);
+        int mul = MUL_TABLE[radius];
+        int last = count - 1;
+
+        int pixel = pixels[offset];
+        long rb = spreadRedBlue(pixel);
+        int g = (pixel >> 8) & 0xff;
+        int weight = (radius + 1) * (radius + 2) / 2;
+        long sumRB = rb * weight;
+        int sumG = g * weight;
+        long sumOutRB = rb * (radius + 1);
+        int sumOutG = g * (radius + 1);
+        long sumInRB = 0;
+        int sumInG = 0;
+        for (int i = 0; i <= radius; i++) {
+            stack[i] = pixel;
+        }
+
+        for (int i = 1; i <= radius; i++) {
+            pixel = pixels[offset + Math.min(i, last) * step];
+            stack[i + radius] = pixel;
+            rb = spreadRedBlue(pixel);
+            g = (pixel >> 8) & 0xff;
+            sumRB += rb * (radius + 1 - i);
+            sumG += g * (radius + 1 - i);
+            sumInRB += rb;
+            sumInG += g;
+        }
+
+        int stackIn = 0;
+        int stackOut = radius + 1;
+        int position = offset;
+        for (int i = 0; i < count; i++, position += step) {
+            pixels[position] = 0xff000000
+                    | (((int) (sumRB >>> 32) * mul) >>> SHIFT) << 16
+                    | ((sumG * mul) >>> SHIFT) << 8
+                    | (((int) (sumRB & LANE_MASK) * mul) >>> SHIFT);
+
+            sumRB -= sumOutRB;
+            sumG -= sumOutG;
+
+            pixel = stack[stackIn];
+            sumOutRB -= spreadRedBlue(pixel);
+            sumOutG -= (pixel >> 8) & 0xff;
+
+            pixel = pixels[offset + Math.min(i + radius + 1, last) * step];
+            stack[stackIn] = pixel;
+            sumInRB += spreadRedBlue(pixel);
+            sumInG += (pixel >> 8) & 0xff;
+
+            sumRB += sumInRB;
+            sumG += sumInG;
+
+            if (++stackIn == div) {
+                stackIn = 0;
+            }
+
+            pixel = stack[stackOut];
+            rb = spreadRedBlue(pixel);
+            g = (pixel >> 8) & 0xff;
+            sumOutRB += rb;
+            sumOutG += g;
+            sumInRB -= rb;
+            sumInG -= g;
+
+            if (++stackOut == div) {
+                stackOut = 0;
+            }
+        }
+    }
+
+    /**
+     * Red into the high lane, blue into the low lane
+     */
+    private static long spreadRedBlue(int pixel) {
+        return ((long) (pixel & 0xff0000) << 16) | (pixel & 0xff);
+    }
+
+    /**
+     * Alpha into the high lane, green into the low lane
+     */
+    private static long spreadAlphaGreen(int pixel) {
+        return ((long) (pixel >>> 24) << 32) | ((pixel >> 8) & 0xff);
+    }
+}
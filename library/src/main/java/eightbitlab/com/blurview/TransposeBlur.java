@@ -0,0 +1,84 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Runs a {@link SeparableBlur} with sequential memory access only.
+ * <p>
+ * The vertical pass of a separable blur walks the memory with a stride of a whole row,
+ * which misses the cache on every pixel of a wide bitmap. Instead, this blurs the rows,
+ * transposes the image in cache-sized tiles, blurs the rows again (the former columns)
+ * and transposes back. The result is bit-identical to the wrapped blur.
+ */
+public class TransposeBlur extends SoftwareBlur {
+
+    // 32x32 ints are 4KB, so both the source and the target tile fit into L1
+    static final int TILE_SIZE = 32;
+
+    private final SeparableBlur blur;
+
+    public TransposeBlur() {
+        this(new StackBlur());
+    }
+
+    /**
+     * @param blur the blur to run, only its horizontal pass is used
+     */
+    public TransposeBlur(@NonNull SeparableBlur blur) {
+        this.blur = blur;
+    }
+
+    @Override
+    public float getMaxBlurRadius() {
+        return blur.getMaxBlurRadius();
+    }
+
+    @Override
+    public void blur(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        int[] transposed = PixelBufferArena.obtain(width * height);
+        try {
+            blur.blurRows(pixels, width, height, blurRadius, 0, height);
+            transpose(pixels, transposed, width, height);
+            blur.blurRows(transposed, height, width, blurRadius, 0, width);
+            transpose(transposed, pixels, height, width);
+        } finally {
+            PixelBufferArena.recycle(transposed);
+        }
+    }
+
+    @Override
+    public void blurOpaque(@NonNull int[] pixels, int width, int height, float blurRadius) {
+        blur.opaque = true;
+        try {
+            blur(pixels, width, height, blurRadius);
+        } finally {
+            blur.opaque = false;
+        }
+    }
+
+    /**
+     * @param source image of the given width and height
+     * @param target receives the image of the swapped width and height
+     */
+    static void transpose(int[] source, int[] target, int width, int height) {
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+            int endY = Math.min(tileY + TILE_SIZE, height);
+            for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+                int endX = Math.min(tileX + TILE_SIZE, width);
+                for (int y = tileY; y < endY; y++) {
+                    int sourceIndex = y * width + tileX;
+                    int targetIndex = tileX * height + y;
+                    for (int x = tileX; x < endX; x++, sourceIndex++, targetIndex += height) {
+                        target[targetIndex] = source[sourceIndex];
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        blur.destroy();
+    }
+}
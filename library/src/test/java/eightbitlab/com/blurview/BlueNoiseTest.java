@@ -0,0 +1,123 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class BlueNoiseTest {
+
+    private static final int SIZE = 64;
+
+    @Test
+    void ranks_are_a_permutation() {
+        int[] ranks = BlueNoise.generateRanks(SIZE, 1);
+
+        boolean[] seen = new boolean[SIZE * SIZE];
+        for (int rank : ranks) {
+            assertTrue(rank >= 0 && rank < seen.length, "Rank out of range: " + rank);
+            assertTrue(!seen[rank], "Duplicate rank: " + rank);
+            seen[rank] = true;
+        }
+    }
+
+    @Test
+    void same_seed_gives_same_tile() {
+        assertArrayEquals(BlueNoise.generateAlpha(16, 38, 2), BlueNoise.generateAlpha(16, 38, 2));
+    }
+
+    @Test
+    void alpha_spans_zero_to_opacity() {
+        byte[] alpha = BlueNoise.generateAlpha(SIZE, 38, 3);
+
+        int min = 255;
+        int max = 0;
+        long sum = 0;
+        for (byte value : alpha) {
+            int a = value & 0xff;
+            min = Math.min(min, a);
+            max = Math.max(max, a);
+            sum += a;
+        }
+        assertEquals(0, min);
+        assertEquals(38, max);
+        assertEquals(19.0, (double) sum / alpha.length, 0.5);
+    }
+
+    @Test
+    void thresholds_are_spread_more_evenly_than_white_noise() {
+        int[] blue = BlueNoise.generateRanks(SIZE, 4);
+        int[] white = shuffledRanks(SIZE * SIZE, 4);
+
+        for (int percent : new int[]{10, 50, 90}) {
+            int threshold = SIZE * SIZE * percent / 100;
+            double blueVariance = blockVariance(blue, threshold);
+            double whiteVariance = blockVariance(white, threshold);
+            assertTrue(blueVariance < whiteVariance / 2,
+                    percent + "%: " + blueVariance + " vs white " + whiteVariance);
+        }
+    }
+
+    @Test
+    void sparse_points_are_not_adjacent() {
+        int[] ranks = BlueNoise.generateRanks(SIZE, 5);
+        int threshold = SIZE * SIZE / 20;
+
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                if (ranks[y * SIZE + x] >= threshold) {
+                    continue;
+                }
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int neighbor = ((y + dy + SIZE) % SIZE) * SIZE + (x + dx + SIZE) % SIZE;
+                        assertTrue((dx == 0 && dy == 0) || ranks[neighbor] >= threshold, "Clump at " + x + ", " + y);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Variance of the amount of the points below the threshold in 4x4 blocks, low for evenly spread points
+     */
+    private static double blockVariance(int[] ranks, int threshold) {
+        int blocks = SIZE / 4;
+        double sum = 0;
+        double sumSquares = 0;
+        for (int blockY = 0; blockY < blocks; blockY++) {
+            for (int blockX = 0; blockX < blocks; blockX++) {
+                int count = 0;
+                for (int y = blockY * 4; y < blockY * 4 + 4; y++) {
+                    for (int x = blockX * 4; x < blockX * 4 + 4; x++) {
+                        if (ranks[y * SIZE + x] < threshold) {
+                            count++;
+                        }
+                    }
+                }
+                sum += count;
+                sumSquares += count * count;
+            }
+        }
+        double mean = sum / (blocks * blocks);
+        return sumSquares / (blocks * blocks) - mean * mean;
+    }
+
+    private static int[] shuffledRanks(int count, long seed) {
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            ranks[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = swap;
+        }
+        return ranks;
+    }
+}
@@ -0,0 +1,94 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class BlurAlgorithmSelectorTest {
+
+    private static final int WIDTH = 270;
+    private static final int HEIGHT = 200;
+
+    @Test
+    void chooses_the_fastest_accurate_algorithm() {
+        List<BlurAlgorithmSelector.Measurement> measurements = Arrays.asList(
+                measurement(BlurAlgorithmSelector.RENDER_SCRIPT_BLUR, 5_000_000, 2),
+                measurement(BlurAlgorithmSelector.STACK_BLUR, 3_000_000, 4),
+                measurement(BlurAlgorithmSelector.DUAL_KAWASE_BLUR, 1_000_000, 20)
+        );
+
+        assertEquals(BlurAlgorithmSelector.STACK_BLUR, BlurAlgorithmSelector.choose(measurements, 8));
+    }
+
+    @Test
+    void skips_unavailable_algorithms() {
+        List<BlurAlgorithmSelector.Measurement> measurements = Arrays.asList(
+                measurement(BlurAlgorithmSelector.RENDER_SCRIPT_BLUR, -1, -1),
+                measurement(BlurAlgorithmSelector.BOX_BLUR, 2_000_000, 6)
+        );
+
+        assertEquals(BlurAlgorithmSelector.BOX_BLUR, BlurAlgorithmSelector.choose(measurements, 8));
+    }
+
+    @Test
+    void falls_back_to_the_most_accurate_algorithm() {
+        List<BlurAlgorithmSelector.Measurement> measurements = Arrays.asList(
+                measurement(BlurAlgorithmSelector.BOX_BLUR, 1_000_000, 12),
+                measurement(BlurAlgorithmSelector.STACK_BLUR, 3_000_000, 10)
+        );
+
+        assertEquals(BlurAlgorithmSelector.STACK_BLUR, BlurAlgorithmSelector.choose(measurements, 8));
+        assertEquals(BlurAlgorithmSelector.STACK_BLUR, BlurAlgorithmSelector.choose(Collections.emptyList(), 8));
+    }
+
+    @Test
+    void decision_survives_encoding() {
+        BlurAlgorithmSelector.Decision decision = new BlurAlgorithmSelector.Decision(
+                BlurAlgorithmSelector.TRANSPOSE_BLUR, WIDTH, HEIGHT, Arrays.asList(
+                measurement(BlurAlgorithmSelector.RENDER_SCRIPT_BLUR, -1, -1),
+                measurement(BlurAlgorithmSelector.TRANSPOSE_BLUR, 1_234_567, 3)
+        ), false);
+
+        BlurAlgorithmSelector.Decision decoded = BlurAlgorithmSelector.Decision.decode(decision.encode(), true);
+
+        assertNotNull(decoded);
+        assertTrue(decoded.isPersisted());
+        assertEquals(decision.encode(), decoded.encode());
+        assertEquals(1_234_567, decoded.getMeasurements().get(1).getNanos());
+        assertTrue(!decoded.getMeasurements().get(0).isAvailable());
+    }
+
+    @Test
+    void malformed_decision_is_ignored() {
+        assertNull(BlurAlgorithmSelector.Decision.decode("", true));
+        assertNull(BlurAlgorithmSelector.Decision.decode("UnknownBlur;1;1", true));
+        assertNull(BlurAlgorithmSelector.Decision.decode("StackBlur;1;x", true));
+        assertNull(BlurAlgorithmSelector.Decision.decode("StackBlur;1;1;StackBlur:1", true));
+    }
+
+    @Test
+    void gaussian_approximations_meet_the_quality_bound() {
+        int[] sample = BlurAlgorithmSelector.sampleImage(WIDTH, HEIGHT, 1);
+        int[] reference = sample.clone();
+        new GaussianBlur().blur(reference, WIDTH, HEIGHT, BlurController.DEFAULT_BLUR_RADIUS);
+
+        for (SoftwareBlur blur : new SoftwareBlur[]{new StackBlur(), new BoxBlur(), new RecursiveGaussianBlur()}) {
+            int[] pixels = sample.clone();
+            blur.blur(pixels, WIDTH, HEIGHT, BlurController.DEFAULT_BLUR_RADIUS);
+            int difference = BlurAlgorithmSelector.maxChannelDifference(reference, pixels);
+            assertTrue(difference <= BlurAlgorithmSelector.MAX_DIFFERENCE,
+                    blur.getClass().getSimpleName() + " differs by " + difference);
+        }
+    }
+
+    private static BlurAlgorithmSelector.Measurement measurement(String algorithm, long nanos, int maxDifference) {
+        return new BlurAlgorithmSelector.Measurement(algorithm, nanos, maxDifference);
+    }
+}
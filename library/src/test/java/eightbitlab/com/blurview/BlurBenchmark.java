@@ -0,0 +1,40 @@
+package eightbitlab.com.blurview;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Minimal timing harness for the JVM benchmarks.
+ * The benchmarks are tagged with {@link #TAG} and only run with -Pbenchmark
+ */
+final class BlurBenchmark {
+
+    static final String TAG = "benchmark";
+
+    private static final int WARMUP_RUNS = 20;
+    private static final int MEASURED_RUNS = 15;
+
+    private BlurBenchmark() {
+    }
+
+    /**
+     * @return median time of a single run in nanoseconds
+     */
+    static long measure(Runnable runnable) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            runnable.run();
+        }
+        long[] times = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            runnable.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[MEASURED_RUNS / 2];
+    }
+
+    static void report(String name, long nanos) {
+        System.out.println(String.format(Locale.US, "%-40s %10.3f ms", name, nanos / 1_000_000.0));
+    }
+}
@@ -0,0 +1,72 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class BlurLevelsTest {
+
+    private final BlurLevels levels = new BlurLevels(4, 20f);
+
+    @Test
+    void levels_are_evenly_spaced() {
+        assertEquals(5f, levels.levelRadius(0));
+        assertEquals(10f, levels.levelRadius(1));
+        assertEquals(20f, levels.levelRadius(3));
+    }
+
+    @Test
+    void radius_between_levels_blends_the_nearest_two() {
+        assertEquals(1, levels.lowerLevel(12.5f));
+        assertEquals(0.5f, levels.blend(12.5f), 1e-6);
+        assertEquals(1, levels.lowerLevel(10f));
+        assertEquals(0f, levels.blend(10f), 1e-6);
+    }
+
+    @Test
+    void radius_below_the_first_level_blends_with_the_sharp_snapshot() {
+        assertEquals(0f, levels.levelRadius(-1));
+        assertEquals(-1, levels.lowerLevel(0f));
+        assertEquals(0f, levels.blend(0f));
+        assertEquals(-1, levels.lowerLevel(2f));
+        assertEquals(0.4f, levels.blend(2f), 1e-6);
+        assertEquals(0, levels.lowerLevel(5f));
+        assertEquals(0f, levels.blend(5f), 1e-6);
+    }
+
+    @Test
+    void radius_outside_of_levels_is_clamped() {
+        assertEquals(-1, levels.lowerLevel(-3f));
+        assertEquals(0f, levels.blend(-3f));
+        assertEquals(2, levels.lowerLevel(20f));
+        assertEquals(1f, levels.blend(20f));
+        assertEquals(2, levels.lowerLevel(100f));
+        assertEquals(1f, levels.blend(100f));
+    }
+
+    @Test
+    void detects_snapshot_changes() {
+        int[] pixels = StackBlurTest.randomPixels(10, 10, 1);
+        System.arraycopy(pixels, 0, levels.snapshotBuffer(100), 0, 100);
+        assertTrue(levels.swapIfChanged(100));
+
+        System.arraycopy(pixels, 0, levels.snapshotBuffer(100), 0, 100);
+        assertFalse(levels.swapIfChanged(100));
+
+        pixels[42] ^= 1;
+        System.arraycopy(pixels, 0, levels.snapshotBuffer(100), 0, 100);
+        assertTrue(levels.swapIfChanged(100));
+
+        // Same pixels, but a different size
+        System.arraycopy(pixels, 0, levels.snapshotBuffer(100), 0, 90);
+        assertTrue(levels.swapIfChanged(90));
+    }
+
+    @Test
+    void needs_two_levels() {
+        assertThrows(IllegalArgumentException.class, () -> new BlurLevels(1, 10f));
+    }
+}
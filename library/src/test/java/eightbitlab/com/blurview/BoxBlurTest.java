@@ -0,0 +1,80 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+class BoxBlurTest {
+
+    private final BoxBlur boxBlur = new BoxBlur();
+
+    @Test
+    void box_sigma_is_close_to_requested_sigma() {
+        int[] radii = new int[BoxBlur.PASSES];
+        for (float radius = 0.5f; radius <= 200f; radius += 0.1f) {
+            float sigma = SoftwareBlur.radiusToSigma(radius);
+            BoxBlur.computeBoxRadii(sigma, radii);
+            double variance = 0;
+            for (int boxRadius : radii) {
+                int boxWidth = boxRadius * 2 + 1;
+                variance += (boxWidth * boxWidth - 1) / 12.0;
+            }
+            assertEquals(sigma, Math.sqrt(variance), 0.2, "radius " + radius);
+        }
+    }
+
+    @Test
+    void keeps_solid_color() {
+        int[] pixels = new int[100 * 30];
+        Arrays.fill(pixels, 0xff20a0c0);
+        int[] expected = pixels.clone();
+
+        boxBlur.blur(pixels, 100, 30, 60f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void preserves_total_intensity_of_impulse() {
+        int width = 81;
+        int height = 81;
+        int[] pixels = new int[width * height];
+        pixels[40 * width + 40] = 0xffffffff;
+
+        // Spreads the white pixel along its row, sums it back up to check the weights add up to 1
+        boxBlur.blurRows(pixels, width, height, 4f, 0, height);
+        int sum = 0;
+        for (int pixel : pixels) {
+            sum += pixel & 0xff;
+        }
+
+        assertEquals(255, sum, 2);
+        assertTrue((pixels[40 * width + 40] & 0xff) < 255);
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void cost_does_not_depend_on_radius() {
+        int width = 270;
+        int height = 150;
+        int[] source = StackBlurTest.randomPixels(width, height, 1);
+        int[] pixels = new int[source.length];
+        long[] times = new long[4];
+        int[] radii = {1, 10, 50, 100};
+        for (int i = 0; i < radii.length; i++) {
+            float radius = radii[i];
+            times[i] = BlurBenchmark.measure(() -> {
+                System.arraycopy(source, 0, pixels, 0, source.length);
+                boxBlur.blur(pixels, width, height, radius);
+            });
+            BlurBenchmark.report("BoxBlur " + width + "x" + height + " radius " + radii[i], times[i]);
+        }
+
+        assertTrue(times[3] < times[0] * 2, "radius 100 should cost about the same as radius 1");
+    }
+}
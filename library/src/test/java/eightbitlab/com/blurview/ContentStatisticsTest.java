@@ -0,0 +1,78 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+class ContentStatisticsTest {
+
+    private final ContentStatistics statistics = new ContentStatistics();
+
+    @Test
+    void solid_color() {
+        int[] pixels = new int[100];
+        Arrays.fill(pixels, 0xff336699);
+
+        statistics.add(pixels, pixels.length);
+
+        assertEquals(100, statistics.getPixelCount());
+        assertEquals(0xff336699, statistics.getAverageColor());
+        // (0x33 * 55 + 0x66 * 183 + 0x99 * 18) / 256 = 94
+        assertEquals(94 / 255f, statistics.getAverageLuminance(), 1e-6);
+        assertEquals(100, statistics.getHistogramCount(94 * ContentStatistics.HISTOGRAM_BINS / 256));
+    }
+
+    @Test
+    void transparent_pixels_only_reduce_alpha() {
+        int[] pixels = {0xffff0000, 0x00000000, 0x800000ff, 0x00ffffff};
+
+        statistics.add(pixels, pixels.length);
+
+        // Alpha is averaged over all pixels, colors are weighted by alpha
+        int averageColor = statistics.getAverageColor();
+        assertEquals((255 + 128 + 2) / 4, averageColor >>> 24);
+        assertEquals(Math.round(255f * 255 / (255 + 128)), (averageColor >> 16) & 0xff);
+        assertEquals(0, (averageColor >> 8) & 0xff);
+        assertEquals(Math.round(255f * 128 / (255 + 128)), averageColor & 0xff);
+        int[] histogram = new int[ContentStatistics.HISTOGRAM_BINS];
+        statistics.copyHistogram(histogram);
+        assertEquals(2, Arrays.stream(histogram).sum());
+    }
+
+    @Test
+    void histogram_covers_the_whole_range() {
+        int[] pixels = new int[256];
+        for (int i = 0; i < 256; i++) {
+            pixels[i] = 0xff000000 | i << 16 | i << 8 | i;
+        }
+
+        statistics.add(pixels, pixels.length);
+
+        for (int bin = 0; bin < ContentStatistics.HISTOGRAM_BINS; bin++) {
+            assertEquals(16, statistics.getHistogramCount(bin));
+        }
+        assertEquals(127.5f / 255, statistics.getAverageLuminance(), 1e-6);
+    }
+
+    @Test
+    void collected_by_post_processing_before_the_effects() {
+        int[] pixels = StackBlurTest.randomPixels(40, 30, 1);
+        statistics.add(pixels, pixels.length);
+        int expectedColor = statistics.getAverageColor();
+        float expectedLuminance = statistics.getAverageLuminance();
+        ContentStatistics collected = new ContentStatistics();
+        PostProcessing postProcessing = new PostProcessing();
+        postProcessing.setOverlayColor(0x80ffffff);
+        postProcessing.setStatistics(collected);
+
+        // Twice, the second run must not accumulate on top of the first one
+        postProcessing.apply(pixels.clone(), 40, 30);
+        postProcessing.apply(StackBlurTest.randomPixels(40, 30, 1), 40, 30);
+
+        assertEquals(1200, collected.getPixelCount());
+        assertEquals(expectedColor, collected.getAverageColor());
+        assertEquals(expectedLuminance, collected.getAverageLuminance(), 1e-6);
+    }
+}
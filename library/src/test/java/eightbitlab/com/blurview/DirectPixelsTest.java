@@ -0,0 +1,153 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+class DirectPixelsTest {
+
+    @Test
+    void little_endian_rgba_reads_as_swapped_argb() {
+        // R, G, B, A bytes of an ARGB_8888 pixel in memory
+        ByteBuffer bytes = ByteBuffer.allocateDirect(4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.put((byte) 0x11).put((byte) 0x22).put((byte) 0x33).put((byte) 0x80).rewind();
+        int[] pixels = {bytes.asIntBuffer().get(0)};
+
+        DirectPixels.swapRedBlue(pixels, 1);
+
+        assertEquals(0x80112233, pixels[0]);
+        DirectPixels.swapRedBlue(pixels, 1);
+        assertEquals(0x80332211, pixels[0]);
+    }
+
+    @Test
+    void premultiply_round_trip() {
+        int[] pixels = new int[256 * 256];
+        for (int a = 0; a < 256; a++) {
+            for (int c = 0; c < 256; c++) {
+                pixels[a * 256 + c] = a << 24 | c << 16 | (255 - c) << 8 | c / 2;
+            }
+        }
+        int[] premultiplied = pixels.clone();
+
+        DirectPixels.premultiply(premultiplied, pixels.length);
+        int[] restored = premultiplied.clone();
+        DirectPixels.unpremultiply(restored, pixels.length);
+
+        for (int i = 0; i < pixels.length; i++) {
+            int a = pixels[i] >>> 24;
+            int premultipliedPixel = premultiplied[i];
+            assertEquals(Math.round((pixels[i] >> 16 & 0xff) * a / 255f), premultipliedPixel >> 16 & 0xff);
+            assertTrue((premultipliedPixel >> 16 & 0xff) <= a);
+            if (a == 0) {
+                assertEquals(0, restored[i]);
+            } else {
+                // Premultiplying loses the precision of the colors with a low alpha
+                int tolerance = (255 + a - 1) / a;
+                assertTrue(Math.abs((pixels[i] >> 16 & 0xff) - (restored[i] >> 16 & 0xff)) <= tolerance);
+                assertTrue(Math.abs((pixels[i] >> 8 & 0xff) - (restored[i] >> 8 & 0xff)) <= tolerance);
+            }
+        }
+    }
+
+    @Test
+    void opaque_pixels_skip_the_conversion() {
+        int[] pixels = StackBlurTest.randomPixels(60, 40, 3);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] |= 0xff000000;
+        }
+        int[] expected = pixels.clone();
+        StackBlur regular = new StackBlur();
+        regular.blurOpaque(expected, 60, 40, 10f);
+
+        new StackBlur().blurPremultiplied(pixels, 60, 40, 10f, true);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void post_processing_gets_unpremultiplied_pixels() {
+        int[] pixels = new int[40 * 30];
+        Arrays.fill(pixels, 0x80000000 | DirectPixels.multiply(0xff, 0x80) << 16);
+        StackBlur blur = new StackBlur();
+        PostProcessing postProcessing = new PostProcessing();
+        ContentStatistics statistics = new ContentStatistics();
+        postProcessing.setStatistics(statistics);
+        blur.setPostProcessing(postProcessing);
+
+        blur.blurPremultiplied(pixels, 40, 30, 5f, false);
+
+        assertEquals(0x80ff0000, statistics.getAverageColor());
+        assertEquals(0x80000000 | 0x80 << 16, pixels[0]);
+    }
+
+    @Test
+    void premultiplied_gradient_fades_the_colors() {
+        int[] pixels = new int[20 * 40];
+        Arrays.fill(pixels, 0xffffffff);
+        SummedAreaBlur blur = new SummedAreaBlur();
+        blur.setGradientDirection(BlurView.GRADIENT_TOP_TO_BOTTOM);
+
+        blur.blurPremultiplied(pixels, 20, 40, 5f, false);
+
+        for (int pixel : pixels) {
+            int a = pixel >>> 24;
+            assertTrue((pixel >> 16 & 0xff) <= a);
+            assertTrue(Math.abs((pixel & 0xff) - a) <= 1);
+        }
+    }
+
+    @Test
+    void swapped_pixels_get_the_same_post_processing() {
+        int[] pixels = StackBlurTest.randomPixels(40, 30, 5);
+        DirectPixels.premultiply(pixels, pixels.length);
+        int[] swapped = pixels.clone();
+        DirectPixels.swapRedBlue(swapped, swapped.length);
+        StackBlur blur = new StackBlur();
+        PostProcessing postProcessing = new PostProcessing();
+        postProcessing.setSaturation(1.5f);
+        blur.setPostProcessing(postProcessing);
+
+        blur.blurPremultiplied(pixels, 40, 30, 5f, false, false);
+        blur.blurPremultiplied(swapped, 40, 30, 5f, false, true);
+
+        DirectPixels.swapRedBlue(swapped, swapped.length);
+        assertArrayEquals(pixels, swapped);
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void get_pixels_vs_raw_copies() {
+        int width = 270;
+        int height = 600;
+        int size = width * height;
+        int[] bitmap = StackBlurTest.randomPixels(width, height, 4);
+        int[] pixels = new int[size];
+        StackBlur blur = new StackBlur();
+        PostProcessing postProcessing = new PostProcessing();
+        postProcessing.setSaturation(1.2f);
+        blur.setPostProcessing(postProcessing);
+        // getPixels and setPixels convert every pixel, modelled by the same conversions in Java
+        BlurBenchmark.report("getPixels/setPixels", BlurBenchmark.measure(() -> {
+            System.arraycopy(bitmap, 0, pixels, 0, size);
+            DirectPixels.unpremultiply(pixels, size);
+            blur.blur(pixels, width, height, 16f);
+            postProcessing.apply(pixels, width, height);
+            DirectPixels.premultiply(pixels, size);
+            System.arraycopy(pixels, 0, bitmap, 0, size);
+        }));
+        // copyPixelsToBuffer and copyPixelsFromBuffer into the wrapped int[] are plain memory copies
+        BlurBenchmark.report("Raw copyPixelsToBuffer", BlurBenchmark.measure(() -> {
+            System.arraycopy(bitmap, 0, pixels, 0, size);
+            blur.blurPremultiplied(pixels, width, height, 16f, false, true);
+            System.arraycopy(pixels, 0, bitmap, 0, size);
+        }));
+    }
+}
@@ -0,0 +1,101 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+
+class DownscaleBlurTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "1, 0", "2, 0", "4, 0", "1.5, 0", "2.7, 0", "3.33, 0",
+            "1, 8", "2, 8", "4, 16", "1.5, 5", "2.7, 12", "3.33, 25"
+    })
+    void matches_downscale_then_blur(float scaleFactor, float blurRadius) {
+        int sourceWidth = 157;
+        int sourceHeight = 83;
+        int[] source = StackBlurTest.randomPixels(sourceWidth, sourceHeight, 11);
+        SizeScaler.Size size = new SizeScaler(scaleFactor, true).scale(sourceWidth, sourceHeight);
+        int[] expected = referenceDownscale(source, sourceWidth, sourceHeight, size.width, size.height);
+        new StackBlur().blur(expected, size.width, size.height, blurRadius);
+        int[] target = new int[size.width * size.height];
+
+        new DownscaleBlur().blur(source, sourceWidth, sourceHeight, target, size.width, size.height, blurRadius);
+
+        assertTrue(RecursiveGaussianBlurTest.maxChannelDifference(expected, target) <= 2);
+    }
+
+    @Test
+    void weights_sum_up_to_one_for_every_target_pixel() {
+        int[] targets = new int[1000];
+        int[] weights = new int[1000];
+        int[] nextWeights = new int[1000];
+        for (int targetSize = 1; targetSize <= 1000; targetSize += 37) {
+            DownscaleBlur.computeWeights(1000, targetSize, targets, weights, nextWeights);
+            int[] sums = new int[targetSize];
+            for (int i = 0; i < 1000; i++) {
+                sums[targets[i]] += weights[i];
+                if (nextWeights[i] != 0) {
+                    sums[targets[i] + 1] += nextWeights[i];
+                }
+            }
+            for (int sum : sums) {
+                assertEquals(256, sum);
+            }
+        }
+    }
+
+    @Test
+    void keeps_solid_color() {
+        int[] source = new int[100 * 60];
+        Arrays.fill(source, 0xc0804020);
+        int[] target = new int[37 * 22];
+        int[] expected = new int[target.length];
+        Arrays.fill(expected, 0xc0804020);
+
+        new DownscaleBlur().blur(source, 100, 60, target, 37, 22, 10f);
+
+        assertArrayEquals(expected, target);
+    }
+
+    @Test
+    void rejects_upscaling() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new DownscaleBlur().blur(new int[100], 10, 10, new int[121], 11, 11, 4f));
+    }
+
+    // Exact area average, every target pixel covers a (fractional) rectangle of the source
+    private static int[] referenceDownscale(int[] source, int sourceWidth, int sourceHeight, int width, int height) {
+        double scaleX = (double) sourceWidth / width;
+        double scaleY = (double) sourceHeight / height;
+        int[] result = new int[width * height];
+        for (int ty = 0; ty < height; ty++) {
+            for (int tx = 0; tx < width; tx++) {
+                double[] sums = new double[4];
+                for (int y = (int) (ty * scaleY); y < Math.min(Math.ceil((ty + 1) * scaleY), sourceHeight); y++) {
+                    double coverageY = Math.min(y + 1, (ty + 1) * scaleY) - Math.max(y, ty * scaleY);
+                    for (int x = (int) (tx * scaleX); x < Math.min(Math.ceil((tx + 1) * scaleX), sourceWidth); x++) {
+                        double coverage = coverageY * (Math.min(x + 1, (tx + 1) * scaleX) - Math.max(x, tx * scaleX));
+                        int pixel = source[y * sourceWidth + x];
+                        for (int c = 0; c < 4; c++) {
+                            sums[c] += ((pixel >>> (24 - c * 8)) & 0xff) * coverage;
+                        }
+                    }
+                }
+                int pixel = 0;
+                for (int c = 0; c < 4; c++) {
+                    pixel |= (int) Math.round(sums[c] / (scaleX * scaleY)) << (24 - c * 8);
+                }
+                result[ty * width + tx] = pixel;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+class DualKawaseBlurTest {
+
+    private final DualKawaseBlur blur = new DualKawaseBlur();
+
+    @ParameterizedTest
+    @ValueSource(floats = {4f, 10f, 16f, 25f, 40f, 60f})
+    void edge_spread_matches_requested_sigma(float radius) {
+        float expected = SoftwareBlur.radiusToSigma(radius);
+        assertEquals(expected, measureSigma(radius), expected * 0.1);
+    }
+
+    @Test
+    void sigma_changes_continuously_between_levels() {
+        double previous = measureSigma(8f);
+        int previousIterations = blur.getIterations();
+        boolean switchedLevels = false;
+        for (float radius = 8.5f; radius <= 20f; radius += 0.5f) {
+            double sigma = measureSigma(radius);
+            assertTrue(blur.getOffset() <= DualKawaseBlur.MAX_OFFSET);
+            assertEquals(previous, sigma, 0.5, "radius " + radius);
+            switchedLevels |= blur.getIterations() != previousIterations;
+            previous = sigma;
+        }
+        assertTrue(switchedLevels);
+    }
+
+    /**
+     * Blurs a vertical step edge, the derivative of the result is the profile of the kernel
+     */
+    private double measureSigma(float radius) {
+        int width = 640;
+        int height = 64;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(pixels, y * width + width / 2, (y + 1) * width, 0xffffffff);
+        }
+
+        blur.blur(pixels, width, height, radius);
+
+        int row = height / 2 * width;
+        double total = 0;
+        double mean = 0;
+        double[] derivative = new double[width - 1];
+        for (int x = 0; x < width - 1; x++) {
+            derivative[x] = (pixels[row + x + 1] & 0xff) - (pixels[row + x] & 0xff);
+            total += derivative[x];
+            mean += derivative[x] * x;
+        }
+        mean /= total;
+        double variance = 0;
+        for (int x = 0; x < width - 1; x++) {
+            variance += derivative[x] * (x - mean) * (x - mean);
+        }
+        return Math.sqrt(variance / total);
+    }
+
+    @Test
+    void keeps_solid_color() {
+        int[] pixels = new int[201 * 77];
+        Arrays.fill(pixels, 0xc0608040);
+        int[] expected = pixels.clone();
+
+        blur.blur(pixels, 201, 77, 30f);
+
+        assertArrayEquals(expected, pixels);
+    }
+}
@@ -0,0 +1,99 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+class GaussianBlurTest {
+
+    @ParameterizedTest
+    @ValueSource(floats = {1f, 4f, 16f, 25f, 60f})
+    void weights_add_up_to_one(float sigma) {
+        GaussianKernel kernel = new GaussianKernel(sigma);
+        int sum = 0;
+        for (int weight : kernel.weights) {
+            sum += weight;
+        }
+
+        assertEquals(1 << GaussianKernel.SHIFT, sum);
+        assertEquals(kernel.weights[0], kernel.weights[kernel.weights.length - 1]);
+    }
+
+    @ParameterizedTest
+    @ValueSource(floats = {1f, 8f, 25f})
+    void matches_reference_convolution(float radius) {
+        int[] pixels = RecursiveGaussianBlurTest.blocks(160, 90);
+        int[] expected = RecursiveGaussianBlurTest.referenceBlur(pixels, 160, 90, SoftwareBlur.radiusToSigma(radius));
+
+        new GaussianBlur().blur(pixels, 160, 90, radius);
+
+        assertTrue(RecursiveGaussianBlurTest.maxChannelDifference(expected, pixels) <= 2);
+    }
+
+    @Test
+    void max_radius_matches_max_sigma() {
+        float maxRadius = new GaussianBlur().getMaxBlurRadius();
+
+        assertEquals(GaussianKernelCache.MAX_SIGMA, SoftwareBlur.radiusToSigma(maxRadius), 1e-3f);
+        // Radii above it get the extra downscale instead of a clamped kernel
+        assertEquals(1, SizeScaler.radiusDownscale(maxRadius, maxRadius));
+        assertTrue(SizeScaler.radiusDownscale(maxRadius * 2, maxRadius) > 1);
+    }
+
+    @Test
+    void keeps_solid_color() {
+        int[] pixels = new int[90 * 40];
+        Arrays.fill(pixels, 0xff7f00ff);
+        int[] expected = pixels.clone();
+
+        new GaussianBlur().blur(pixels, 90, 40, 25f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void sweeping_radius_reuses_kernels() {
+        GaussianKernelCache.clear();
+        GaussianBlur blur = new GaussianBlur();
+        int[] pixels = StackBlurTest.randomPixels(32, 32, 3);
+
+        // Same as the SeekBar in the sample app
+        for (int progress = 16; progress <= 100; progress++) {
+            blur.blur(pixels, 32, 32, progress / 4f);
+        }
+        long misses = GaussianKernelCache.getMissCount();
+        long hits = GaussianKernelCache.getHitCount();
+        for (int progress = 100; progress >= 16; progress--) {
+            blur.blur(pixels, 32, 32, progress / 4f);
+        }
+
+        assertEquals(misses, GaussianKernelCache.getMissCount());
+        assertTrue(GaussianKernelCache.getHitCount() > hits);
+    }
+
+    @Test
+    void cache_evicts_least_recently_used() {
+        GaussianKernelCache.clear();
+        GaussianKernel first = GaussianKernelCache.get(1f);
+        for (int i = 1; i < GaussianKernelCache.CAPACITY; i++) {
+            GaussianKernelCache.get(2f + i * GaussianKernelCache.SIGMA_STEP);
+            // Keeps the first one recently used
+            GaussianKernelCache.get(1f);
+        }
+        GaussianKernelCache.get(50f);
+        long misses = GaussianKernelCache.getMissCount();
+
+        assertSame(first, GaussianKernelCache.get(1f));
+        assertEquals(misses, GaussianKernelCache.getMissCount());
+        // The oldest one got evicted
+        GaussianKernelCache.get(2f + GaussianKernelCache.SIGMA_STEP);
+        assertEquals(misses + 1, GaussianKernelCache.getMissCount());
+    }
+}
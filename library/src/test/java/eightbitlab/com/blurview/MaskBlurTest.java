@@ -0,0 +1,94 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+class MaskBlurTest {
+
+    private final MaskBlur maskBlur = new MaskBlur();
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 16, 25, 100, StackBlur.MAX_RADIUS})
+    void matches_alpha_of_argb_blur(int radius) {
+        int width = 61;
+        int height = 29;
+        int[] pixels = StackBlurTest.randomPixels(width, height, radius);
+        byte[] mask = alphaOf(pixels);
+        new StackBlur().blur(pixels, width, height, radius);
+
+        maskBlur.blur(mask, width, height, radius);
+
+        assertArrayEquals(alphaOf(pixels), mask);
+    }
+
+    @Test
+    void respects_stride() {
+        int width = 20;
+        int height = 12;
+        int stride = 24;
+        int[] pixels = StackBlurTest.randomPixels(width, height, 4);
+        byte[] expected = alphaOf(pixels);
+        maskBlur.blur(expected, width, height, 7f);
+        byte[] padded = new byte[stride * height];
+        Arrays.fill(padded, (byte) 0x5a);
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(alphaOf(pixels), y * width, padded, y * stride, width);
+        }
+
+        maskBlur.blur(padded, width, height, stride, 7f);
+
+        for (int y = 0; y < height; y++) {
+            assertArrayEquals(Arrays.copyOfRange(expected, y * width, (y + 1) * width),
+                    Arrays.copyOfRange(padded, y * stride, y * stride + width));
+            for (int x = width; x < stride; x++) {
+                assertEquals((byte) 0x5a, padded[y * stride + x]);
+            }
+        }
+    }
+
+    @Test
+    void keeps_solid_mask() {
+        byte[] mask = new byte[40 * 40];
+        Arrays.fill(mask, (byte) 0xc8);
+        byte[] expected = mask.clone();
+
+        maskBlur.blur(mask, 40, 40, 30f);
+
+        assertArrayEquals(expected, mask);
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void compare_with_argb_blur() {
+        int width = 1080;
+        int height = 600;
+        int[] source = StackBlurTest.randomPixels(width, height, 9);
+        int[] pixels = new int[source.length];
+        byte[] sourceMask = alphaOf(source);
+        byte[] mask = new byte[sourceMask.length];
+        StackBlur stackBlur = new StackBlur();
+        BlurBenchmark.report("ARGB StackBlur", BlurBenchmark.measure(() -> {
+            System.arraycopy(source, 0, pixels, 0, source.length);
+            stackBlur.blur(pixels, width, height, 16f);
+        }));
+        BlurBenchmark.report("Mask StackBlur", BlurBenchmark.measure(() -> {
+            System.arraycopy(sourceMask, 0, mask, 0, sourceMask.length);
+            maskBlur.blur(mask, width, height, 16f);
+        }));
+    }
+
+    private static byte[] alphaOf(int[] pixels) {
+        byte[] mask = new byte[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            mask[i] = (byte) (pixels[i] >>> 24);
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,85 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.function.Supplier;
+
+class OpaqueBlurTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 90;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4, 16, 25, 100})
+    void stack_blur_matches_four_channels(int radius) {
+        assertMatchesFourChannels(StackBlur::new, radius);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4, 16, 25, 100})
+    void box_blur_matches_four_channels(int radius) {
+        assertMatchesFourChannels(BoxBlur::new, radius);
+    }
+
+    @Test
+    void wrappers_pass_the_opacity_through() {
+        assertMatchesFourChannels(() -> new ParallelBlur(BoxBlur::new, 4), 16);
+        assertMatchesFourChannels(() -> new TransposeBlur(new BoxBlur()), 16);
+        assertMatchesFourChannels(SwarStackBlur::new, 16);
+    }
+
+    @Test
+    void other_blurs_keep_opaque_alpha() {
+        assertMatchesFourChannels(GaussianBlur::new, 16);
+        assertMatchesFourChannels(RecursiveGaussianBlur::new, 16);
+        assertMatchesFourChannels(DualKawaseBlur::new, 16);
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void compare_with_four_channels() {
+        int[] source = opaquePixels(1080, 600);
+        int[] pixels = new int[source.length];
+        StackBlur stackBlur = new StackBlur();
+        BoxBlur boxBlur = new BoxBlur();
+        BlurBenchmark.report("StackBlur 4 channels", BlurBenchmark.measure(() -> {
+            System.arraycopy(source, 0, pixels, 0, source.length);
+            stackBlur.blur(pixels, 1080, 600, 16f);
+        }));
+        BlurBenchmark.report("StackBlur opaque", BlurBenchmark.measure(() -> {
+            System.arraycopy(source, 0, pixels, 0, source.length);
+            stackBlur.blurOpaque(pixels, 1080, 600, 16f);
+        }));
+        BlurBenchmark.report("BoxBlur 4 channels", BlurBenchmark.measure(() -> {
+            System.arraycopy(source, 0, pixels, 0, source.length);
+            boxBlur.blur(pixels, 1080, 600, 16f);
+        }));
+        BlurBenchmark.report("BoxBlur opaque", BlurBenchmark.measure(() -> {
+            System.arraycopy(source, 0, pixels, 0, source.length);
+            boxBlur.blurOpaque(pixels, 1080, 600, 16f);
+        }));
+    }
+
+    private static void assertMatchesFourChannels(Supplier<SoftwareBlur> factory, int radius) {
+        int[] expected = opaquePixels(WIDTH, HEIGHT);
+        int[] pixels = expected.clone();
+        factory.get().blur(expected, WIDTH, HEIGHT, radius);
+
+        factory.get().blurOpaque(pixels, WIDTH, HEIGHT, radius);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    private static int[] opaquePixels(int width, int height) {
+        int[] pixels = StackBlurTest.randomPixels(width, height, width);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] |= 0xff000000;
+        }
+        return pixels;
+    }
+}
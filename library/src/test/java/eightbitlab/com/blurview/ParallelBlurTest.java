@@ -0,0 +1,125 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ParallelBlurTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 4, 7, 8, 16})
+    void output_is_identical_to_single_threaded_blur(int parallelism) {
+        int width = 270;
+        int height = 97;
+        int[] expected = StackBlurTest.randomPixels(width, height, parallelism);
+        int[] pixels = expected.clone();
+        new StackBlur().blur(expected, width, height, 16f);
+
+        ParallelBlur parallelBlur = new ParallelBlur(StackBlur::new, parallelism);
+        parallelBlur.blur(pixels, width, height, 16f);
+        // Twice to make sure the stripes are reusable
+        int[] again = StackBlurTest.randomPixels(width, height, parallelism);
+        parallelBlur.blur(again, width, height, 16f);
+
+        assertArrayEquals(expected, pixels);
+        assertArrayEquals(expected, again);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void small_images_are_blurred_the_same(int parallelism) {
+        int[] expected = StackBlurTest.randomPixels(31, 17, 42);
+        int[] pixels = expected.clone();
+        new StackBlur().blur(expected, 31, 17, 5f);
+
+        new ParallelBlur(StackBlur::new, parallelism).blur(pixels, 31, 17, 5f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void worker_failure_is_rethrown_after_all_stripes_finished() {
+        int width = 256;
+        int height = 256;
+        FailingBlur[] created = new FailingBlur[4];
+        int[] index = {0};
+        ParallelBlur parallelBlur = new ParallelBlur(() -> {
+            FailingBlur blur = new FailingBlur(index[0] == 2);
+            created[index[0]++] = blur;
+            return blur;
+        }, 4);
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> parallelBlur.blur(new int[width * height], width, height, 8f));
+
+        assertSame(created[2].failure, thrown);
+        for (FailingBlur blur : created) {
+            // The blur returns only once every stripe is done, the failing one included
+            assertEquals(0, blur.running.get());
+        }
+    }
+
+    @Test
+    void caller_failure_waits_for_the_workers() {
+        int width = 256;
+        int height = 256;
+        FailingBlur[] created = new FailingBlur[4];
+        int[] index = {0};
+        ParallelBlur parallelBlur = new ParallelBlur(() -> {
+            FailingBlur blur = new FailingBlur(index[0] == 0);
+            created[index[0]++] = blur;
+            return blur;
+        }, 4);
+
+        assertThrows(IllegalStateException.class,
+                () -> parallelBlur.blur(new int[width * height], width, height, 8f));
+
+        for (FailingBlur blur : created) {
+            assertEquals(0, blur.running.get());
+        }
+    }
+
+    private static class FailingBlur extends SeparableBlur {
+        final AtomicInteger running = new AtomicInteger();
+        final IllegalStateException failure = new IllegalStateException("stripe failed");
+        private final boolean fail;
+
+        FailingBlur(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        void blurRows(@NonNull int[] pixels, int width, int height, float blurRadius, int fromRow, int toRow) {
+            running.incrementAndGet();
+            try {
+                if (fail) {
+                    throw failure;
+                }
+                sleep();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        void blurColumns(@NonNull int[] pixels, int width, int height, float blurRadius, int fromColumn, int toColumn) {
+        }
+
+        private static void sleep() {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+class PixelBufferArenaTest {
+
+    @BeforeEach
+    void setUp() {
+        // Other tests leave their free buffers
+        PixelBufferArena.trim();
+    }
+
+    @AfterEach
+    void tearDown() {
+        PixelBufferArena.trim();
+    }
+
+    @Test
+    void size_classes_fit_the_size_with_at_most_a_third_wasted() {
+        for (int size = 1; size < 1 << 22; size += 997) {
+            int index = PixelBufferArena.classIndex(size);
+            int classSize = PixelBufferArena.classSize(index);
+            assertTrue(classSize >= size);
+            if (index > 0) {
+                assertTrue(PixelBufferArena.classSize(index - 1) < size);
+                assertTrue(classSize - size < classSize / 3 + 1);
+            }
+        }
+        assertEquals(1024, PixelBufferArena.classSize(0));
+        assertEquals(1536, PixelBufferArena.classSize(1));
+        assertEquals(2048, PixelBufferArena.classSize(2));
+        assertEquals(PixelBufferArena.CLASS_COUNT - 1, PixelBufferArena.classIndex(1 << 30));
+    }
+
+    @Test
+    void steady_state_reuses_the_buffer() {
+        long allocated = PixelBufferArena.getAllocatedBytes();
+        int[] first = PixelBufferArena.obtain(270 * 150);
+        PixelBufferArena.recycle(first);
+
+        // A slightly different size shares the class
+        int[] second = PixelBufferArena.obtain(270 * 151);
+        PixelBufferArena.recycle(second);
+
+        assertSame(first, second);
+        assertEquals(allocated + first.length * 4L, PixelBufferArena.getAllocatedBytes());
+        assertEquals(first.length * 4L, PixelBufferArena.getRetainedBytes());
+    }
+
+    @Test
+    void nested_buffers_are_different() {
+        int[] outer = PixelBufferArena.obtain(5000);
+        int[] inner = PixelBufferArena.obtain(5000);
+
+        assertNotSame(outer, inner);
+        PixelBufferArena.recycle(inner);
+        PixelBufferArena.recycle(outer);
+        assertEquals(outer.length * 8L, PixelBufferArena.getRetainedBytes());
+    }
+
+    @Test
+    void trim_releases_the_free_buffers() {
+        long allocated = PixelBufferArena.getAllocatedBytes();
+        int[] borrowed = PixelBufferArena.obtain(10000);
+        PixelBufferArena.recycle(PixelBufferArena.obtain(20000));
+
+        PixelBufferArena.trim();
+
+        assertEquals(0, PixelBufferArena.getRetainedBytes());
+        assertEquals(allocated + borrowed.length * 4L, PixelBufferArena.getAllocatedBytes());
+        PixelBufferArena.recycle(borrowed);
+    }
+
+    @Test
+    void threads_have_their_own_buffers() throws InterruptedException {
+        int[] buffer = PixelBufferArena.obtain(3000);
+        PixelBufferArena.recycle(buffer);
+        AtomicReference<int[]> other = new AtomicReference<>();
+
+        Thread thread = new Thread(() -> {
+            other.set(PixelBufferArena.obtain(3000));
+            PixelBufferArena.recycle(other.get());
+        });
+        thread.start();
+        thread.join();
+
+        assertNotSame(buffer, other.get());
+    }
+
+    @Test
+    void foreign_arrays_are_ignored() {
+        long allocated = PixelBufferArena.getAllocatedBytes();
+        PixelBufferArena.recycle(new int[1000]);
+        // Matches a size class, but the arena didn't hand it out
+        PixelBufferArena.recycle(new int[1024]);
+
+        assertEquals(0, PixelBufferArena.getRetainedBytes());
+        PixelBufferArena.trim();
+        assertEquals(allocated, PixelBufferArena.getAllocatedBytes());
+    }
+
+    @Test
+    void only_as_many_buffers_as_borrowed_are_taken_back() {
+        long allocated = PixelBufferArena.getAllocatedBytes();
+        int[] borrowed = PixelBufferArena.obtain(2048);
+        PixelBufferArena.recycle(new int[2048]);
+        PixelBufferArena.recycle(new int[2048]);
+        // The same buffer twice
+        PixelBufferArena.recycle(borrowed);
+        PixelBufferArena.recycle(borrowed);
+
+        // A single buffer was handed out, so a single one is kept
+        assertEquals(borrowed.length * 4L, PixelBufferArena.getRetainedBytes());
+        PixelBufferArena.trim();
+        assertEquals(allocated, PixelBufferArena.getAllocatedBytes());
+    }
+
+    @Test
+    void sizes_above_the_classes_are_not_pooled() {
+        assertThrows(IllegalArgumentException.class, () -> PixelBufferArena.classIndex(PixelBufferArena.MAX_CLASS_SIZE + 1));
+    }
+}
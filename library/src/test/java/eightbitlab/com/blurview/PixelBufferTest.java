@@ -0,0 +1,99 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+class PixelBufferTest {
+
+    private static final int WIDTH = 50;
+    private static final int HEIGHT = 30;
+
+    @Test
+    void packed_array_is_blurred_in_place() {
+        int[] pixels = StackBlurTest.randomPixels(WIDTH, HEIGHT, 1);
+        int[] expected = pixels.clone();
+        new StackBlur().blur(expected, WIDTH, HEIGHT, 8f);
+        ArrayPixelBuffer buffer = new ArrayPixelBuffer(pixels, WIDTH, HEIGHT);
+
+        new StackBlur().blur(buffer, 8f);
+
+        assertSame(pixels, buffer.getArray());
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void padded_array_keeps_the_padding() {
+        int stride = WIDTH + 7;
+        int offset = 3;
+        int[] packed = StackBlurTest.randomPixels(WIDTH, HEIGHT, 2);
+        int[] padded = new int[offset + stride * HEIGHT];
+        Arrays.fill(padded, 0x12345678);
+        ArrayPixelBuffer buffer = new ArrayPixelBuffer(padded, offset, WIDTH, HEIGHT, stride, PixelBuffer.FORMAT_ARGB);
+        buffer.write(packed);
+        new StackBlur().blur(packed, WIDTH, HEIGHT, 8f);
+
+        new StackBlur().blur(buffer, 8f);
+
+        int[] result = new int[WIDTH * HEIGHT];
+        buffer.read(result);
+        assertArrayEquals(packed, result);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = WIDTH; x < stride && offset + y * stride + x < padded.length; x++) {
+                assertEquals(0x12345678, padded[offset + y * stride + x]);
+            }
+        }
+        assertEquals(0x12345678, padded[0]);
+    }
+
+    @Test
+    void direct_buffer_reads_the_bitmap_layout() {
+        int stride = WIDTH + 4;
+        IntBuffer ints = ByteBuffer.allocateDirect(stride * HEIGHT * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        // R, G, B, A bytes
+        ints.put(stride + 1, 0x80332211);
+        DirectPixelBuffer buffer = new DirectPixelBuffer(ints, WIDTH, HEIGHT, stride);
+        int[] pixels = new int[WIDTH * HEIGHT];
+
+        buffer.read(pixels);
+
+        assertEquals(0x80332211, pixels[WIDTH + 1]);
+        assertEquals(PixelBuffer.FORMAT_ABGR_PREMULTIPLIED, buffer.getFormat());
+        pixels[0] = 0xff445566;
+        buffer.write(pixels);
+        assertEquals(0xff445566, ints.get(0));
+        assertEquals(0x80332211, ints.get(stride + 1));
+    }
+
+    @Test
+    void direct_buffer_is_blurred_premultiplied() {
+        int[] pixels = StackBlurTest.randomPixels(WIDTH, HEIGHT, 3);
+        DirectPixels.premultiply(pixels, pixels.length);
+        int[] expected = pixels.clone();
+        new StackBlur().blurPremultiplied(expected, WIDTH, HEIGHT, 8f, false);
+        IntBuffer ints = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        DirectPixelBuffer buffer = new DirectPixelBuffer(ints, WIDTH, HEIGHT, WIDTH);
+        buffer.write(pixels.clone());
+
+        new StackBlur().blur(buffer, 8f);
+
+        int[] result = new int[WIDTH * HEIGHT];
+        buffer.read(result);
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    void rejects_buffers_that_are_too_small() {
+        assertThrows(IllegalArgumentException.class, () -> new ArrayPixelBuffer(new int[10], 0, 4, 3, 4, PixelBuffer.FORMAT_ARGB));
+        IntBuffer bigEndian = ByteBuffer.allocateDirect(64).asIntBuffer();
+        assertThrows(IllegalArgumentException.class, () -> new DirectPixelBuffer(bigEndian, 4, 4, 4));
+    }
+}
@@ -0,0 +1,115 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+class PostProcessingTest {
+
+    private final PostProcessing postProcessing = new PostProcessing();
+
+    @Test
+    void identity_keeps_pixels() {
+        int[] pixels = StackBlurTest.randomPixels(20, 10, 1);
+        int[] expected = pixels.clone();
+        postProcessing.setSaturation(1f);
+
+        postProcessing.apply(pixels, 20, 10);
+
+        assertTrue(postProcessing.isIdentity());
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void overlay_matches_src_over() {
+        int[] pixels = StackBlurTest.randomPixels(64, 64, 2);
+        int[] source = pixels.clone();
+        int overlay = 0x80204060;
+        postProcessing.setOverlayColor(overlay);
+
+        postProcessing.apply(pixels, 64, 64);
+
+        for (int i = 0; i < pixels.length; i++) {
+            assertClose(srcOver(overlay, source[i]), pixels[i]);
+        }
+    }
+
+    @Test
+    void opaque_overlay_replaces_pixels() {
+        int[] pixels = StackBlurTest.randomPixels(8, 8, 3);
+        postProcessing.setOverlayColor(0xff123456);
+
+        postProcessing.apply(pixels, 8, 8);
+
+        int[] expected = new int[64];
+        Arrays.fill(expected, 0xff123456);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void zero_saturation_makes_gray() {
+        int[] pixels = {0xff336699, 0x80ff0000, 0xff00ff00};
+        postProcessing.setSaturation(0f);
+
+        postProcessing.apply(pixels, 3, 1);
+
+        for (int pixel : pixels) {
+            int r = (pixel >> 16) & 0xff;
+            assertEquals(r, (pixel >> 8) & 0xff);
+            assertEquals(r, pixel & 0xff);
+        }
+        assertEquals(0x80, pixels[1] >>> 24);
+        // 0.213 * 255
+        assertEquals(54, pixels[1] & 0xff);
+    }
+
+    @Test
+    void saturation_above_one_clamps() {
+        int[] pixels = {0xffff0000, 0xff808080};
+        postProcessing.setSaturation(2f);
+
+        postProcessing.apply(pixels, 2, 1);
+
+        assertEquals(0xffff0000, pixels[0]);
+        assertEquals(0xff808080, pixels[1]);
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void cost_of_baking() {
+        int width = 270;
+        int height = 150;
+        int[] source = StackBlurTest.randomPixels(width, height, 6);
+        int[] pixels = new int[source.length];
+        postProcessing.setOverlayColor(0x40ffffff);
+        postProcessing.setSaturation(1.5f);
+        BlurBenchmark.report("Saturation and overlay", BlurBenchmark.measure(() -> {
+            System.arraycopy(source, 0, pixels, 0, source.length);
+            postProcessing.apply(pixels, width, height);
+        }));
+    }
+
+    private static int srcOver(int source, int destination) {
+        double sa = (source >>> 24) / 255.0;
+        double da = (destination >>> 24) / 255.0;
+        double ra = sa + da * (1 - sa);
+        int result = (int) Math.round(ra * 255) << 24;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            double sc = ((source >> shift) & 0xff) / 255.0;
+            double dc = ((destination >> shift) & 0xff) / 255.0;
+            double premultiplied = sc * sa + dc * da * (1 - sa);
+            result |= (int) Math.round(premultiplied / ra * 255) << shift;
+        }
+        return result;
+    }
+
+    private static void assertClose(int expected, int actual) {
+        assertTrue(RecursiveGaussianBlurTest.maxChannelDifference(new int[]{expected}, new int[]{actual}) <= 1,
+                Integer.toHexString(expected) + " != " + Integer.toHexString(actual));
+    }
+}
@@ -0,0 +1,133 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+class RecursiveGaussianBlurTest {
+
+    // The recursive filter itself is a bit off for small sigmas,
+    // and float starts losing precision for huge ones. The blocks differ by 224 levels.
+    @ParameterizedTest
+    @CsvSource({
+            "0, 2, 10", "0, 8, 8", "0, 25, 2", "0, 60, 2", "0, 150, 12",
+            "1, 2, 10", "1, 8, 8", "1, 25, 2", "1, 60, 2", "1, 150, 2"
+    })
+    void is_close_to_reference_convolution(int precision, float radius, int tolerance) {
+        int width = 160;
+        int height = 90;
+        int[] pixels = blocks(width, height);
+        int[] expected = referenceBlur(pixels, width, height, SoftwareBlur.radiusToSigma(radius));
+
+        new RecursiveGaussianBlur(precision).blur(pixels, width, height, radius);
+
+        int maxDifference = maxChannelDifference(expected, pixels);
+        assertTrue(maxDifference <= tolerance, "max difference " + maxDifference);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {RecursiveGaussianBlur.PRECISION_FLOAT, RecursiveGaussianBlur.PRECISION_FIXED_POINT})
+    void keeps_solid_color(int precision) {
+        int[] pixels = new int[120 * 40];
+        Arrays.fill(pixels, 0xfe10c080);
+        int[] expected = pixels.clone();
+
+        new RecursiveGaussianBlur(precision).blur(pixels, 120, 40, 100f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void cost_per_precision_and_radius() {
+        int width = 270;
+        int height = 150;
+        int[] source = StackBlurTest.randomPixels(width, height, 1);
+        int[] pixels = new int[source.length];
+        for (int precision = 0; precision <= 1; precision++) {
+            RecursiveGaussianBlur blur = new RecursiveGaussianBlur(precision);
+            for (float radius : new float[]{1f, 25f, 100f, 400f}) {
+                long time = BlurBenchmark.measure(() -> {
+                    System.arraycopy(source, 0, pixels, 0, source.length);
+                    blur.blur(pixels, width, height, radius);
+                });
+                String name = precision == RecursiveGaussianBlur.PRECISION_FLOAT ? "float" : "fixed point";
+                BlurBenchmark.report("Recursive " + name + " radius " + radius, time);
+            }
+        }
+    }
+
+    // Solid rectangles with sharp edges, the worst case for the approximation
+    static int[] blocks(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean light = ((x / 20) + (y / 15)) % 2 == 0;
+                pixels[y * width + x] = light ? 0xfff0e0d0 : 0x80102030;
+            }
+        }
+        return pixels;
+    }
+
+    static int maxChannelDifference(int[] expected, int[] actual) {
+        int max = 0;
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                int difference = Math.abs(((expected[i] >>> shift) & 0xff) - ((actual[i] >>> shift) & 0xff));
+                max = Math.max(max, difference);
+            }
+        }
+        return max;
+    }
+
+    // Separable convolution with a sampled Gaussian and extended edges, in double
+    static int[] referenceBlur(int[] source, int width, int height, float sigma) {
+        int radius = (int) Math.ceil(sigma * 4);
+        double[] kernel = new double[radius * 2 + 1];
+        double sum = 0;
+        for (int i = -radius; i <= radius; i++) {
+            kernel[i + radius] = Math.exp(-(i * i) / (2.0 * sigma * sigma));
+            sum += kernel[i + radius];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= sum;
+        }
+
+        double[][] rows = new double[4][source.length];
+        for (int channel = 0; channel < 4; channel++) {
+            int shift = channel * 8;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    double value = 0;
+                    for (int k = -radius; k <= radius; k++) {
+                        int sx = Math.min(Math.max(x + k, 0), width - 1);
+                        value += kernel[k + radius] * ((source[y * width + sx] >>> shift) & 0xff);
+                    }
+                    rows[channel][y * width + x] = value;
+                }
+            }
+        }
+        int[] result = new int[source.length];
+        for (int channel = 0; channel < 4; channel++) {
+            int shift = channel * 8;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    double value = 0;
+                    for (int k = -radius; k <= radius; k++) {
+                        int sy = Math.min(Math.max(y + k, 0), height - 1);
+                        value += kernel[k + radius] * rows[channel][sy * width + x];
+                    }
+                    result[y * width + x] |= (int) Math.round(value) << shift;
+                }
+            }
+        }
+        return result;
+    }
+}
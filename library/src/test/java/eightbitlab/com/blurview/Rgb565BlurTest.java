@@ -0,0 +1,92 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+class Rgb565BlurTest {
+
+    private final Rgb565Blur blur = new Rgb565Blur();
+
+    @Test
+    void pack_and_unpack_round_trip_every_color() {
+        int size = 1 << 16;
+        int[] pixels = new int[size];
+        for (int i = 0; i < size; i++) {
+            pixels[i] = Rgb565Blur.expand(i);
+        }
+        int[] expected = pixels.clone();
+
+        Rgb565Blur.pack(pixels, 256, 256);
+        Rgb565Blur.unpack(pixels, size);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void keeps_solid_color() {
+        int width = 33;
+        int height = 17;
+        int[] pixels = packed(width, height, 0x8410);
+        int[] expected = pixels.clone();
+
+        blur.blurPacked(pixels, width, height, 20f);
+
+        assertArrayEquals(Arrays.copyOf(expected, Rgb565Blur.packedSize(width * height)),
+                Arrays.copyOf(pixels, Rgb565Blur.packedSize(width * height)));
+    }
+
+    @Test
+    void stays_within_one_step_of_argb_blur() {
+        int width = 120;
+        int height = 45;
+        int size = width * height;
+        int[] pixels = new int[size];
+        int[] random = StackBlurTest.randomPixels(width, height, 3);
+        for (int i = 0; i < size; i++) {
+            pixels[i] = Rgb565Blur.expand(random[i] & 0xffff);
+        }
+        int[] expected = pixels.clone();
+        new StackBlur().blur(expected, width, height, 10f);
+        Rgb565Blur.pack(pixels, width, height);
+
+        blur.blurPacked(pixels, width, height, 10f);
+        Rgb565Blur.unpack(pixels, size);
+
+        for (int i = 0; i < size; i++) {
+            assertTrue(Math.abs(((pixels[i] >> 16) & 0xff) - ((expected[i] >> 16) & 0xff)) <= 8);
+            assertTrue(Math.abs(((pixels[i] >> 8) & 0xff) - ((expected[i] >> 8) & 0xff)) <= 4);
+            assertTrue(Math.abs((pixels[i] & 0xff) - (expected[i] & 0xff)) <= 8);
+        }
+    }
+
+    @Test
+    void dithering_keeps_average_of_unrepresentable_color() {
+        // 130 is between the 5 bit levels 123 and 132, and between the 6 bit levels 130 and 134
+        int[] pixels = new int[16 * 16];
+        Arrays.fill(pixels, 0xff828382);
+
+        Rgb565Blur.pack(pixels, 16, 16);
+        Rgb565Blur.unpack(pixels, pixels.length);
+
+        long red = 0;
+        long green = 0;
+        for (int pixel : pixels) {
+            red += (pixel >> 16) & 0xff;
+            green += (pixel >> 8) & 0xff;
+        }
+        assertEquals(130, red / (double) pixels.length, 0.5);
+        assertEquals(131, green / (double) pixels.length, 0.5);
+    }
+
+    private static int[] packed(int width, int height, int rgb565) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, Rgb565Blur.expand(rgb565));
+        Rgb565Blur.pack(pixels, width, height);
+        return pixels;
+    }
+}
@@ -1,6 +1,7 @@
 package eightbitlab.com.blurview;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.params.provider.Arguments.of;
 
 import androidx.annotation.NonNull;
@@ -33,6 +34,47 @@ class SizeScalerTest {
         assertEquals(isZeroSized, scaler.isZeroSized(x, y));
     }
 
+    @ParameterizedTest
+    @CsvSource({"1,270,150", "16,272,152", "64,320,178"})
+    void aligns_the_width_for_the_policy(int alignment, int expectedWidth, int expectedHeight) {
+        // A 1080x600 BlurView with the scale factor 4
+        Size size = new SizeScaler(4f, alignment).scale(1080, 600);
+
+        assertEquals(size(expectedWidth, expectedHeight), size);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1080,600", "1080,2000", "720,300", "1440,900"})
+    void unaligned_policy_saves_pixels(int width, int height) {
+        Size aligned = new SizeScaler(4f, SizeScaler.DEFAULT_STRIDE_ALIGNMENT).scale(width, height);
+        Size unaligned = new SizeScaler(4f, new StackBlur().getStrideAlignment()).scale(width, height);
+
+        int alignedPixels = aligned.width * aligned.height;
+        int unalignedPixels = unaligned.width * unaligned.height;
+        assertTrue(unalignedPixels <= alignedPixels);
+        // The aligned width is up to 63 pixels wider, and the height grows with it
+        double expectedSavings = 1 - Math.pow((double) (width / 4) / aligned.width, 2);
+        assertEquals(expectedSavings, 1 - (double) unalignedPixels / alignedPixels, 0.02);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"10,25,1", "25,25,1", "26,25,2", "40,25,2", "80,25,4", "300,254,2"})
+    void radiusDownscale(float radius, float maxRadius, int expected) {
+        assertEquals(expected, SizeScaler.radiusDownscale(radius, maxRadius));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"40,25", "60,25", "100,25", "1000,25", "300,254"})
+    void downscaled_radius_keeps_the_sigma_within_the_max_radius(float radius, float maxRadius) {
+        int downscale = SizeScaler.radiusDownscale(radius, maxRadius);
+        float downscaledRadius = SizeScaler.downscaleRadius(radius, downscale);
+
+        assertTrue(downscaledRadius <= maxRadius + 1e-3f);
+        // The sigma in the original pixels stays the same
+        assertEquals(SoftwareBlur.radiusToSigma(radius),
+                SoftwareBlur.radiusToSigma(downscaledRadius) * downscale, 1e-3f);
+    }
+
     @SuppressWarnings("unused")
     private static Stream<Arguments> scalingResults() {
         return Stream.of(
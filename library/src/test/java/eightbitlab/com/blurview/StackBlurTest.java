@@ -0,0 +1,102 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+class StackBlurTest {
+
+    private final StackBlur stackBlur = new StackBlur();
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 5, 16, 25, 40, 100, StackBlur.MAX_RADIUS})
+    void matches_reference_convolution(int radius) {
+        int width = 37;
+        int height = 23;
+        int[] pixels = randomPixels(width, height, radius);
+        int[] expected = referenceBlur(pixels, width, height, radius);
+
+        stackBlur.blur(pixels, width, height, radius);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void keeps_solid_color() {
+        int[] pixels = new int[64 * 16];
+        Arrays.fill(pixels, 0x80336699);
+        int[] expected = pixels.clone();
+
+        stackBlur.blur(pixels, 64, 16, 30f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void zero_radius_is_noop() {
+        int[] pixels = randomPixels(8, 8, 0);
+        int[] expected = pixels.clone();
+
+        stackBlur.blur(pixels, 8, 8, 0.2f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void clamps_radius_above_max() {
+        int[] pixels = randomPixels(16, 16, 1);
+        int[] expected = pixels.clone();
+        stackBlur.blur(expected, 16, 16, StackBlur.MAX_RADIUS);
+
+        stackBlur.blur(pixels, 16, 16, 1000f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    static int[] randomPixels(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    // Straightforward triangle-weighted convolution with clamped edges, rows then columns
+    private static int[] referenceBlur(int[] source, int width, int height, int radius) {
+        int[] rows = new int[source.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rows[y * width + x] = referencePixel(source, y * width, 1, width, x, radius);
+            }
+        }
+        int[] result = new int[source.length];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                result[y * width + x] = referencePixel(rows, x, width, height, y, radius);
+            }
+        }
+        return result;
+    }
+
+    private static int referencePixel(int[] pixels, int offset, int step, int count, int center, int radius) {
+        long divisor = (long) (radius + 1) * (radius + 1);
+        int mul = (int) (((1L << 24) + divisor - 1) / divisor);
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int sum = 0;
+            for (int k = -radius; k <= radius; k++) {
+                int index = Math.min(Math.max(center + k, 0), count - 1);
+                int channel = (pixels[offset + index * step] >>> shift) & 0xff;
+                sum += channel * (radius + 1 - Math.abs(k));
+            }
+            result |= ((sum * mul) >>> 24) << shift;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,160 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+class SummedAreaBlurTest {
+
+    private final SummedAreaBlur blur = new SummedAreaBlur();
+
+    @Test
+    void matches_reference_box_passes_with_per_pixel_radii() {
+        int width = 47;
+        int height = 31;
+        int[] pixels = StackBlurTest.randomPixels(width, height, 2);
+        float[] radiusMap = new float[width * height];
+        Random random = new Random(3);
+        for (int i = 0; i < radiusMap.length; i++) {
+            radiusMap[i] = random.nextInt(30);
+        }
+        int[] expected = pixels.clone();
+        for (int pass = 0; pass < SummedAreaBlur.PASSES; pass++) {
+            expected = referenceBoxPass(expected, width, height, radiusMap);
+        }
+
+        blur.blur(pixels, width, height, radiusMap);
+
+        assertTrue(RecursiveGaussianBlurTest.maxChannelDifference(expected, pixels) <= 1);
+    }
+
+    @Test
+    void keeps_solid_color() {
+        int[] pixels = new int[120 * 70];
+        Arrays.fill(pixels, 0xc0336699);
+        int[] expected = pixels.clone();
+
+        blur.blur(pixels, 120, 70, 25f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void zero_radius_is_noop() {
+        int[] pixels = StackBlurTest.randomPixels(20, 20, 4);
+        int[] expected = pixels.clone();
+
+        blur.blur(pixels, 20, 20, 0f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void uniform_blur_is_close_to_gaussian() {
+        int width = 101;
+        int height = 101;
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 0xff000000);
+        // A vertical line, so the horizontal profile is the 1D kernel
+        for (int y = 0; y < height; y++) {
+            pixels[y * width + 50] = 0xffffffff;
+        }
+        for (float radius : new float[]{5f, 10f, 25f}) {
+            int[] impulse = pixels.clone();
+            float sigma = SoftwareBlur.radiusToSigma(radius);
+            blur.blur(impulse, width, height, radius);
+            double weightSum = 0;
+            double varianceSum = 0;
+            for (int x = 0; x < width; x++) {
+                double weight = impulse[50 * width + x] & 0xff;
+                weightSum += weight;
+                varianceSum += weight * (x - 50) * (x - 50);
+            }
+            double measuredSigma = Math.sqrt(varianceSum / weightSum);
+            // Box widths are odd integers, so the sigma can't be matched exactly
+            assertEquals(sigma, measuredSigma, sigma * 0.25);
+        }
+    }
+
+    @Test
+    void gradient_fades_radius_and_alpha() {
+        int width = 40;
+        int height = 90;
+        int[] pixels = StackBlurTest.randomPixels(width, height, 5);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] |= 0xff000000;
+        }
+        int[] uniform = pixels.clone();
+        blur.blur(uniform, width, height, 10f);
+        blur.setGradientDirection(BlurView.GRADIENT_TOP_TO_BOTTOM);
+
+        blur.blur(pixels, width, height, 10f);
+
+        // The plateau is blurred the same way until the box of the next rows starts shrinking
+        assertArrayEquals(Arrays.copyOf(uniform, width), Arrays.copyOf(pixels, width));
+        for (int x = 0; x < width; x++) {
+            assertEquals(0xff, pixels[x] >>> 24);
+            assertTrue((pixels[(height - 1) * width + x] >>> 24) < 8);
+        }
+        for (int y = 1; y < height; y++) {
+            assertTrue((pixels[y * width] >>> 24) <= (pixels[(y - 1) * width] >>> 24));
+        }
+    }
+
+    @Test
+    void gradient_profile() {
+        assertEquals(1f, SummedAreaBlur.gradient(BlurView.GRADIENT_NONE, 5, 5, 10, 10));
+        assertEquals(1f, SummedAreaBlur.gradient(BlurView.GRADIENT_TOP_TO_BOTTOM, 0, 0, 10, 100));
+        assertEquals(0.5f, SummedAreaBlur.gradient(BlurView.GRADIENT_LEFT_TO_RIGHT, 133, 0, 200, 10), 0.01f);
+        assertEquals(0.5f, SummedAreaBlur.gradient(BlurView.GRADIENT_RIGHT_TO_LEFT, 66, 0, 200, 10), 0.01f);
+        assertEquals(0f, SummedAreaBlur.gradient(BlurView.GRADIENT_BOTTOM_TO_TOP, 0, 0, 10, 1000), 0.01f);
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void cost_does_not_depend_on_radius() {
+        int width = 270;
+        int height = 600;
+        int[] source = StackBlurTest.randomPixels(width, height, 6);
+        int[] pixels = new int[source.length];
+        blur.setGradientDirection(BlurView.GRADIENT_TOP_TO_BOTTOM);
+        for (float radius : new float[]{4f, 16f, 64f}) {
+            BlurBenchmark.report("Progressive radius " + radius, BlurBenchmark.measure(() -> {
+                System.arraycopy(source, 0, pixels, 0, source.length);
+                blur.blur(pixels, width, height, radius);
+            }));
+        }
+    }
+
+    private static int[] referenceBoxPass(int[] source, int width, int height, float[] radiusMap) {
+        int[] result = new int[source.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int radius = SummedAreaBlur.toBoxRadius(radiusMap[y * width + x]);
+                long[] sums = new long[4];
+                int area = 0;
+                for (int by = Math.max(y - radius, 0); by <= Math.min(y + radius, height - 1); by++) {
+                    for (int bx = Math.max(x - radius, 0); bx <= Math.min(x + radius, width - 1); bx++) {
+                        int pixel = source[by * width + bx];
+                        for (int c = 0; c < 4; c++) {
+                            sums[c] += (pixel >>> (24 - c * 8)) & 0xff;
+                        }
+                        area++;
+                    }
+                }
+                int pixel = 0;
+                for (int c = 0; c < 4; c++) {
+                    pixel |= (int) Math.round((double) sums[c] / area) << (24 - c * 8);
+                }
+                result[y * width + x] = pixel;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+class SwarStackBlurTest {
+
+    @Test
+    void output_is_identical_to_scalar_blur_for_all_radii() {
+        StackBlur scalar = new StackBlur();
+        SwarStackBlur swar = new SwarStackBlur();
+        int width = 41;
+        int height = 29;
+        for (int radius = 1; radius <= StackBlur.MAX_RADIUS; radius++) {
+            int[] expected = StackBlurTest.randomPixels(width, height, radius);
+            int[] pixels = expected.clone();
+
+            scalar.blur(expected, width, height, radius);
+            swar.blur(pixels, width, height, radius);
+
+            assertArrayEquals(expected, pixels, "radius " + radius);
+        }
+    }
+
+    @Test
+    void opaque_output_is_identical_to_scalar_blur_for_all_radii() {
+        StackBlur scalar = new StackBlur();
+        SwarStackBlur swar = new SwarStackBlur();
+        int width = 41;
+        int height = 29;
+        for (int radius = 1; radius <= StackBlur.MAX_RADIUS; radius++) {
+            int[] expected = opaque(StackBlurTest.randomPixels(width, height, radius));
+            int[] pixels = expected.clone();
+
+            scalar.blurOpaque(expected, width, height, radius);
+            swar.blurOpaque(pixels, width, height, radius);
+
+            assertArrayEquals(expected, pixels, "radius " + radius);
+        }
+    }
+
+    @Test
+    void saturated_channels_do_not_overflow_lanes() {
+        SwarStackBlur swar = new SwarStackBlur();
+        int[] pixels = new int[600 * 3];
+        Arrays.fill(pixels, 0xffffffff);
+        int[] expected = pixels.clone();
+
+        swar.blur(pixels, 600, 3, StackBlur.MAX_RADIUS);
+        assertArrayEquals(expected, pixels);
+
+        swar.blurOpaque(pixels, 600, 3, StackBlur.MAX_RADIUS);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void compare_with_scalar_blur() {
+        int[][] sizes = {{270, 64}, {540, 300}, {1080, 600}};
+        StackBlur scalar = new StackBlur();
+        SwarStackBlur swar = new SwarStackBlur();
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            int[] source = StackBlurTest.randomPixels(width, height, 7);
+            int[] pixels = new int[source.length];
+            String suffix = " " + width + "x" + height;
+            BlurBenchmark.report("StackBlur" + suffix, BlurBenchmark.measure(() -> {
+                System.arraycopy(source, 0, pixels, 0, source.length);
+                scalar.blur(pixels, width, height, 16f);
+            }));
+            BlurBenchmark.report("SwarStackBlur" + suffix, BlurBenchmark.measure(() -> {
+                System.arraycopy(source, 0, pixels, 0, source.length);
+                swar.blur(pixels, width, height, 16f);
+            }));
+        }
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void compare_opaque_with_scalar_blur() {
+        int[][] sizes = {{270, 64}, {540, 300}, {1080, 600}};
+        StackBlur scalar = new StackBlur();
+        SwarStackBlur swar = new SwarStackBlur();
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            int[] source = opaque(StackBlurTest.randomPixels(width, height, 7));
+            int[] pixels = new int[source.length];
+            String suffix = " opaque " + width + "x" + height;
+            BlurBenchmark.report("StackBlur" + suffix, BlurBenchmark.measure(() -> {
+                System.arraycopy(source, 0, pixels, 0, source.length);
+                scalar.blurOpaque(pixels, width, height, 16f);
+            }));
+            BlurBenchmark.report("SwarStackBlur" + suffix, BlurBenchmark.measure(() -> {
+                System.arraycopy(source, 0, pixels, 0, source.length);
+                swar.blurOpaque(pixels, width, height, 16f);
+            }));
+        }
+    }
+
+    private static int[] opaque(int[] pixels) {
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] |= 0xff000000;
+        }
+        return pixels;
+    }
+}
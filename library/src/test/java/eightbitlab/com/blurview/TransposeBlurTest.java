@@ -0,0 +1,63 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class TransposeBlurTest {
+
+    @ParameterizedTest
+    @CsvSource({"270, 64", "33, 70", "1, 40", "40, 1", "100, 100"})
+    void output_is_identical_to_two_pass_blur(int width, int height) {
+        int[] expected = StackBlurTest.randomPixels(width, height, width);
+        int[] pixels = expected.clone();
+        new StackBlur().blur(expected, width, height, 12f);
+
+        new TransposeBlur(new StackBlur()).blur(pixels, width, height, 12f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void transposes_partial_tiles() {
+        int width = TransposeBlur.TILE_SIZE + 5;
+        int height = TransposeBlur.TILE_SIZE * 2 + 1;
+        int[] source = StackBlurTest.randomPixels(width, height, 5);
+        int[] target = new int[source.length];
+
+        TransposeBlur.transpose(source, target, width, height);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(source[y * width + x], target[x * height + y]);
+            }
+        }
+    }
+
+    @Test
+    @Tag(BlurBenchmark.TAG)
+    void compare_with_two_pass_blur() {
+        int[][] sizes = {{270, 64}, {540, 150}, {1080, 300}, {1080, 600}};
+        StackBlur naive = new StackBlur();
+        TransposeBlur transposed = new TransposeBlur(new StackBlur());
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            int[] source = StackBlurTest.randomPixels(width, height, 7);
+            int[] pixels = new int[source.length];
+            String suffix = " " + width + "x" + height;
+            BlurBenchmark.report("Two pass" + suffix, BlurBenchmark.measure(() -> {
+                System.arraycopy(source, 0, pixels, 0, source.length);
+                naive.blur(pixels, width, height, 16f);
+            }));
+            BlurBenchmark.report("Transposed" + suffix, BlurBenchmark.measure(() -> {
+                System.arraycopy(source, 0, pixels, 0, source.length);
+                transposed.blur(pixels, width, height, 16f);
+            }));
+        }
+    }
+}